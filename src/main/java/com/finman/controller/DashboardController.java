@@ -1,16 +1,19 @@
 package com.finman.controller;
 
-import com.finman.repository.UserRepository;
-import com.finman.repository.LoanRepository;
-import com.finman.repository.DocumentRepository;
-import com.finman.repository.LoanInstallmentRepository;
-import com.finman.model.enums.LoanStatus;
+import com.finman.model.DashboardSnapshot;
+import com.finman.service.DashboardSnapshotService;
+import com.finman.service.DashboardStatsService;
+import com.finman.service.DashboardStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -19,71 +22,42 @@ import java.util.Map;
 public class DashboardController {
 
     @Autowired
-    private UserRepository userRepository;
+    private DashboardStatsService dashboardStatsService;
 
     @Autowired
-    private LoanRepository loanRepository;
+    private DashboardStreamService dashboardStreamService;
 
     @Autowired
-    private DocumentRepository documentRepository;
-
-    @Autowired
-    private LoanInstallmentRepository loanInstallmentRepository;
+    private DashboardSnapshotService dashboardSnapshotService;
 
     @GetMapping("/stats")
-    public ResponseEntity<Map<String, Object>> getDashboardStats() {
+    public ResponseEntity<Map<String, Object>> getDashboardStats(@RequestParam(defaultValue = "false") boolean fresh) {
         try {
-            Map<String, Object> stats = new HashMap<>();
-            
-            // Total de clientes
-            long totalUsers = userRepository.count();
-            stats.put("totalUsers", totalUsers);
-            
-            // Empréstimos ativos
-            long activeLoans = loanRepository.findByStatus(LoanStatus.ACTIVE).size();
-            stats.put("activeLoans", activeLoans);
-            
-            // Valor total dos empréstimos ativos
-            BigDecimal totalValue = loanRepository.findByStatus(LoanStatus.ACTIVE)
-                .stream()
-                .map(loan -> loan.getLoanAmount())
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-            stats.put("totalValue", totalValue);
-            
-            // Total de documentos
-            long totalDocuments = documentRepository.count();
-            stats.put("totalDocuments", totalDocuments);
-            
-            // Parcelas pagas (todas)
-            long paidInstallments = loanInstallmentRepository.findAll()
-                .stream()
-                .filter(installment -> installment.getIsPaid())
-                .count();
-            stats.put("paidInstallments", paidInstallments);
-            
-            // Parcelas vencidas
-            long overdueInstallments = loanInstallmentRepository.findByDueDateBeforeAndIsPaidFalse(
-                java.time.LocalDate.now()
-            ).size();
-            stats.put("overdueInstallments", overdueInstallments);
-            
-            // Empréstimos aprovados (todos)
-            long approvedLoans = loanRepository.findByStatus(LoanStatus.APPROVED).size();
-            stats.put("approvedLoans", approvedLoans);
-            
-            // Valor total aprovado
-            BigDecimal totalApproved = loanRepository.findByStatus(LoanStatus.APPROVED)
-            .stream()
-            .map(loan -> loan.getLoanAmount())
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-            stats.put("totalApproved", totalApproved);
-            
-            return ResponseEntity.ok(stats);
-            
+            // fresh=true ignora os contadores em memória e consulta o banco
+            return ResponseEntity.ok(fresh ? dashboardStatsService.getStatsFromDatabase() : dashboardStatsService.getStats());
         } catch (Exception e) {
             Map<String, Object> error = new HashMap<>();
             error.put("error", "Erro ao buscar estatísticas: " + e.getMessage());
             return ResponseEntity.internalServerError().body(error);
         }
     }
+
+    // Snapshot ao conectar e depois só os campos alterados (no máximo um evento por intervalo)
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDashboardStats() {
+        return dashboardStreamService.subscribe();
+    }
+
+    // Tendência diária; sem datas, devolve o último ano
+    @GetMapping("/history")
+    public ResponseEntity<List<DashboardSnapshot>> getDashboardHistory(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusYears(1);
+        if (start.isAfter(end)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(dashboardSnapshotService.getHistory(start, end));
+    }
 }
@@ -5,16 +5,33 @@ import com.finman.model.User;
 import com.finman.model.enums.DocumentType;
 import com.finman.repository.DocumentRepository;
 import com.finman.repository.UserRepository;
+import com.finman.service.DocumentArchiveService;
+import com.finman.service.DocumentContentCache;
+import com.finman.service.DocumentDownloadService;
+import com.finman.service.DocumentStore;
+import com.finman.service.DocumentTieringService;
+import com.finman.service.DocumentUploadService;
 import com.finman.service.FileStorageService;
+import com.finman.service.PortfolioCounters;
+import com.finman.service.ThumbnailService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/documents")
@@ -30,6 +47,27 @@ public class DocumentController {
     @Autowired
     private FileStorageService fileStorageService;
     
+    @Autowired
+    private PortfolioCounters portfolioCounters;
+    
+    @Autowired
+    private DocumentDownloadService documentDownloadService;
+    
+    @Autowired
+    private DocumentUploadService documentUploadService;
+    
+    @Autowired
+    private ThumbnailService thumbnailService;
+    
+    @Autowired
+    private DocumentTieringService documentTieringService;
+    
+    @Autowired
+    private DocumentArchiveService documentArchiveService;
+    
+    @Autowired
+    private DocumentContentCache documentContentCache;
+    
     // Listar todos os documentos de um usuário
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<Document>> getUserDocuments(@PathVariable Long userId) {
@@ -46,13 +84,33 @@ public class DocumentController {
         return ResponseEntity.ok(documents);
     }
     
-    // Upload de documento
+    // Dossiê com todos os documentos do usuário, em ZIP gerado em streaming
+    @GetMapping("/user/{userId}/archive")
+    public void downloadUserArchive(@PathVariable Long userId, HttpServletResponse response) throws IOException {
+        if (!userRepository.existsById(userId)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        startArchive(response, "documentos-usuario-" + userId + ".zip");
+        documentArchiveService.writeUserArchive(userId, response.getOutputStream());
+    }
+    
+    // Dossiês de vários usuários: um ZIP por usuário dentro de um único ZIP
+    @GetMapping("/archive")
+    public void downloadUsersArchive(@RequestParam("userIds") List<Long> userIds,
+                                     HttpServletResponse response) throws IOException {
+        List<Long> missing = userIds.stream().distinct().filter(id -> !userRepository.existsById(id)).toList();
+        if (userIds.isEmpty() || !missing.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Usuários não encontrados: " + missing);
+            return;
+        }
+        startArchive(response, "documentos-usuarios.zip");
+        documentArchiveService.writeBatchArchive(userIds, response.getOutputStream());
+    }
+    
+    // Upload de documento: corpo multipart lido em streaming, direto para o armazenamento
     @PostMapping("/user/{userId}")
-    public ResponseEntity<String> uploadDocument(
-            @PathVariable Long userId,
-            @RequestParam("file") MultipartFile file,
-            @RequestParam("documentType") DocumentType documentType,
-            @RequestParam(value = "description", required = false) String description) {
+    public ResponseEntity<String> uploadDocument(@PathVariable Long userId, HttpServletRequest request) {
         
         try {
             // Verificar se usuário existe
@@ -63,91 +121,111 @@ public class DocumentController {
             
             User user = userOpt.get();
             
-            // Validar tipo de arquivo (apenas imagens e PDFs)
-            String contentType = file.getContentType();
-            if (contentType == null || 
-                (!contentType.startsWith("image/") && !contentType.equals("application/pdf"))) {
-                return ResponseEntity.badRequest().body("Apenas imagens e PDFs são permitidos");
+            if (!DocumentUploadService.isMultipart(request)) {
+                return ResponseEntity.badRequest().body("Envie o documento como multipart/form-data");
             }
             
-            // Validar tamanho (máximo 10MB)
-            if (file.getSize() > 10 * 1024 * 1024) {
-                return ResponseEntity.badRequest().body("Arquivo muito grande. Máximo 10MB");
+            // Salvar arquivo (tipo e tamanho validados durante a leitura; conteúdo já existente é reaproveitado)
+            DocumentUploadService.Upload upload;
+            try {
+                upload = documentUploadService.receive(request);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
             }
-            
-            // Salvar arquivo
-            String fileName = fileStorageService.storeFile(file);
+            FileStorageService.StoredFile stored = upload.file();
+            String fileName = stored.fileName();
             
             // Criar documento
-            Document document = new Document(user, documentType, fileName, 
-                                           file.getOriginalFilename(), file.getSize(), contentType);
-            if (description != null && !description.trim().isEmpty()) {
-                document.setDescription(description);
+            Document document = new Document(user, upload.documentType(), fileName, 
+                                           upload.originalFileName(), stored.size(), upload.contentType());
+            document.setContentHash(stored.contentHash());
+            if (upload.description() != null && !upload.description().trim().isEmpty()) {
+                document.setDescription(upload.description());
             }
             
-            documentRepository.save(document);
+            try {
+                documentRepository.save(document);
+            } catch (RuntimeException e) {
+                // Documento não gravado: o conteúdo recém-armazenado só fica se outro documento o usar
+                fileStorageService.releasePending(stored.contentHash());
+                try {
+                    fileStorageService.deleteIfUnreferenced(stored.contentHash());
+                } catch (IOException | RuntimeException cleanupError) {
+                    e.addSuppressed(cleanupError);
+                }
+                throw e;
+            }
+            fileStorageService.releasePending(stored.contentHash());
+            portfolioCounters.documentsChanged(1);
+            thumbnailService.documentStored(document);
             
             return ResponseEntity.ok("Documento enviado com sucesso: " + fileName);
             
+        } catch (DocumentStore.BusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body("Armazenamento ocupado, tente novamente em instantes");
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Erro ao enviar documento: " + e.getMessage());
         }
     }
     
-    // Download de documento
+    // Download de documento (aceita Range para downloads parciais)
     @GetMapping("/{documentId}/download")
-    public ResponseEntity<byte[]> downloadDocument(@PathVariable Long documentId) {
-        try {
-            Optional<Document> documentOpt = documentRepository.findById(documentId);
-            if (documentOpt.isEmpty()) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            Document document = documentOpt.get();
-            byte[] fileBytes = fileStorageService.loadFileAsBytes(document.getFileName());
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(document.getContentType()));
-            headers.setContentLength(fileBytes.length);
-            headers.setContentDispositionFormData("attachment", document.getOriginalFileName());
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(fileBytes);
-                    
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
-        }
+    public void downloadDocument(@PathVariable Long documentId,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serveDocument(documentId, true, request, response);
     }
     
-    // Visualizar documento (sem download)
+    // Visualizar documento (sem download); visualizadores de PDF buscam as páginas por Range
     @GetMapping("/{documentId}/view")
-    public ResponseEntity<byte[]> viewDocument(@PathVariable Long documentId) {
-        try {
-            Optional<Document> documentOpt = documentRepository.findById(documentId);
-            if (documentOpt.isEmpty()) {
-                return ResponseEntity.notFound().build();
+    public void viewDocument(@PathVariable Long documentId,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serveDocument(documentId, false, request, response);
+    }
+    
+    // Miniatura JPEG de documentos de imagem; enquanto ela é gerada, responde com o próprio arquivo
+    @GetMapping("/{documentId}/thumbnail")
+    public void getThumbnail(@PathVariable Long documentId,
+                             @RequestParam(value = "size", defaultValue = "200") int size,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Document> documentOpt = documentRepository.findById(documentId);
+        if (documentOpt.isEmpty() || !ThumbnailService.supports(documentOpt.get())) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (size <= 0) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        
+        Document document = documentOpt.get();
+        int thumbnailSize = thumbnailService.normalizeSize(size);
+        Path thumbnail = thumbnailService.findOrSchedule(document, thumbnailSize);
+        if (thumbnail != null) {
+            if (checkNotModified(document, "-" + thumbnailSize, request, response)) {
+                return;
             }
-            
-            Document document = documentOpt.get();
-            System.out.println("Visualizando documento: " + document.getFileName() + " - Tipo: " + document.getContentType());
-            
-            byte[] fileBytes = fileStorageService.loadFileAsBytes(document.getFileName());
-            System.out.println("Tamanho do arquivo: " + fileBytes.length + " bytes");
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(document.getContentType()));
-            headers.setContentLength(fileBytes.length);
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(fileBytes);
-                    
-        } catch (Exception e) {
-            System.err.println("Erro ao visualizar documento: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.internalServerError().build();
+            documentDownloadService.serve(thumbnail, "image/jpeg", null, false, request, response);
+            return;
         }
+        // O original não pode ficar em cache no lugar da miniatura
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        documentDownloadService.serve(fileStorageService.open(document.getFileName()),
+                document.getContentType(), document.getOriginalFileName(), false, request, response);
+    }
+    
+    // Espaço economizado por deduplicação e compressão, por camada (quente/fria); refresh só agenda a varredura
+    @GetMapping("/storage-report")
+    public ResponseEntity<Map<String, Object>> getStorageReport(
+            @RequestParam(value = "refresh", defaultValue = "false") boolean refresh) {
+        return ResponseEntity.ok(documentTieringService.getReport(refresh));
+    }
+    
+    // Acertos, falhas e remoções do cache de documentos em memória
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(documentContentCache.getStats());
     }
     
     // Verificar documento
@@ -184,11 +262,15 @@ public class DocumentController {
             
             Document document = documentOpt.get();
             
-            // Deletar arquivo físico
-            fileStorageService.deleteFile(document.getFileName());
-            
             // Deletar registro do banco
             documentRepository.delete(document);
+            portfolioCounters.documentsChanged(-1);
+            
+            documentContentCache.documentDeleted(document);
+            
+            // Deletar arquivo físico: compartilhado por conteúdo, só sai com a última referência
+            fileStorageService.deleteDocumentFile(document);
+            thumbnailService.documentDeleted(document);
             
             return ResponseEntity.ok("Documento deletado com sucesso");
             
@@ -196,4 +278,57 @@ public class DocumentController {
             return ResponseEntity.internalServerError().body("Erro ao deletar documento: " + e.getMessage());
         }
     }
+    
+    // Downloads com o backend de armazenamento sem capacidade: o cliente tenta de novo
+    @ExceptionHandler(DocumentStore.BusyException.class)
+    public void handleStoreBusy(HttpServletResponse response) throws IOException {
+        if (!response.isCommitted()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+    }
+    
+    // O tamanho do ZIP não é conhecido de antemão: a resposta sai em chunked
+    private static void startArchive(HttpServletResponse response, String fileName) {
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString());
+    }
+    
+    // Arquivo enviado em streaming direto do armazenamento, sem passar por byte[]
+    private void serveDocument(Long documentId, boolean attachment,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Document> documentOpt = documentRepository.findById(documentId);
+        if (documentOpt.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        Document document = documentOpt.get();
+        if (checkNotModified(document, "", request, response)) {
+            return;
+        }
+        documentDownloadService.serve(documentContentCache.open(document),
+                document.getContentType(), document.getOriginalFileName(), attachment, request, response);
+    }
+    
+    /**
+     * O conteúdo de um documento nunca muda depois de gravado: a ETag é o hash do conteúdo e
+     * a data de modificação é a do upload. Revalidações (If-None-Match / If-Modified-Since)
+     * são respondidas com 304 só com os dados do banco, sem abrir o arquivo.
+     *
+     * @param variant sufixo da ETag para representações derivadas do conteúdo (miniaturas)
+     */
+    private static boolean checkNotModified(Document document, String variant,
+                                            HttpServletRequest request, HttpServletResponse response) {
+        // "private": documentos pessoais não ficam em caches compartilhados
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable().getHeaderValue());
+        long lastModified = document.getCreatedAt() != null
+                ? document.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        // Arquivos ainda no formato antigo não têm hash: só a data
+        return document.getContentHash() != null
+                ? webRequest.checkNotModified("\"" + document.getContentHash() + variant + "\"", lastModified)
+                : webRequest.checkNotModified(lastModified);
+    }
 }
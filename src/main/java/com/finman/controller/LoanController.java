@@ -6,10 +6,25 @@ import com.finman.model.LoanInstallment;
 import com.finman.model.enums.LoanStatus;
 import com.finman.model.enums.PaymentFrequency;
 import com.finman.model.enums.PaymentType;
+import com.finman.repository.LoanInstallmentRepository;
 import com.finman.repository.LoanRepository;
 import com.finman.repository.UserRepository;
 import com.finman.dto.CreateLoanRequest;
+import com.finman.dto.LoanPaymentAllocationResponse;
+import com.finman.dto.LoanQuoteGridRequest;
+import com.finman.dto.LoanQuoteGridResponse;
+import com.finman.dto.LoanQuoteResponse;
+import com.finman.dto.LoanScheduleSummaryResponse;
+import com.finman.service.AmortizationEngine;
+import com.finman.service.AmortizationSummary;
+import com.finman.service.IdempotencyService;
+import com.finman.service.InstallmentDueIndex;
+import com.finman.service.LoanDisbursementService;
+import com.finman.service.LoanPaymentService;
+import com.finman.service.LoanQuoteService;
+import com.finman.service.PortfolioCounters;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,8 +32,6 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
-import java.util.ArrayList;
-import java.math.RoundingMode;
 
 @RestController
 @RequestMapping("/api/loans")
@@ -31,6 +44,30 @@ public class LoanController {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private AmortizationEngine amortizationEngine;
+    
+    @Autowired
+    private LoanQuoteService loanQuoteService;
+    
+    @Autowired
+    private LoanDisbursementService loanDisbursementService;
+    
+    @Autowired
+    private LoanPaymentService loanPaymentService;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    @Autowired
+    private InstallmentDueIndex installmentDueIndex;
+    
+    @Autowired
+    private PortfolioCounters portfolioCounters;
+    
+    @Autowired
+    private LoanInstallmentRepository installmentRepository;
+    
     @GetMapping
     public ResponseEntity<List<Loan>> getAllLoans() {
         List<Loan> loans = loanRepository.findAll();
@@ -58,6 +95,14 @@ public class LoanController {
     
     @PostMapping
     public ResponseEntity<Loan> createLoan(@RequestBody CreateLoanRequest request) {
+        // Prazo limitado: o cronograma é gerado inteiro no desembolso e na simulação
+        if (!loanQuoteService.isValidTerm(request.getTermValue())) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        if (!AmortizationEngine.isValidAlternateDaysInterval(request.getPaymentFrequency(), request.getAlternateDaysInterval())) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        
         // Validar se o usuário existe
         Optional<User> user = userRepository.findById(request.getUserId());
         if (!user.isPresent()) {
@@ -85,6 +130,7 @@ public class LoanController {
         loan.setTotalPaidAmount(BigDecimal.ZERO);
         
         Loan savedLoan = loanRepository.save(loan);
+        portfolioCounters.loanChanged(null, null, savedLoan.getStatus(), savedLoan.getLoanAmount());
         return ResponseEntity.ok(savedLoan);
     }
     
@@ -99,30 +145,59 @@ public class LoanController {
         
         Loan loan = loanOpt.get();
         User approver = approverOpt.get();
+        LoanStatus previousStatus = loan.getStatus();
         
         loan.approve(approver);
         Loan savedLoan = loanRepository.save(loan);
+        portfolioCounters.loanChanged(previousStatus, loan.getLoanAmount(), savedLoan.getStatus(), savedLoan.getLoanAmount());
         
         return ResponseEntity.ok(savedLoan);
     }
     
     @PutMapping("/{id}/disburse")
-    public ResponseEntity<Loan> disburseLoan(@PathVariable Long id) {
-        Optional<Loan> loanOpt = loanRepository.findById(id);
-        
-        if (!loanOpt.isPresent()) {
-            return ResponseEntity.notFound().build();
-        }
-        
-        Loan loan = loanOpt.get();
-        loan.disburse();
-        Loan savedLoan = loanRepository.save(loan);
-        
-        return ResponseEntity.ok(savedLoan);
+    public ResponseEntity<?> disburseLoan(@PathVariable Long id,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("loan-disburse:" + id, idempotencyKey, null, () -> {
+            try {
+                // Desembolso grava as parcelas e a transação de desembolso junto com o status
+                Optional<Loan> loanOpt = loanDisbursementService.disburse(id);
+                return loanOpt.<ResponseEntity<?>>map(ResponseEntity::ok)
+                              .orElse(ResponseEntity.notFound().build());
+            } catch (IllegalArgumentException e) {
+                // Empréstimo gravado antes da validação com intervalo de dias inválido
+                return ResponseEntity.badRequest().build();
+            } catch (IllegalStateException e) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+        });
+    }
+    
+    @PostMapping("/{id}/payments")
+    public ResponseEntity<?> payLoan(@PathVariable Long id, @RequestParam BigDecimal amount,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("loan-payment:" + id, idempotencyKey, IdempotencyService.amountFingerprint(amount), () -> {
+            try {
+                // Valor rateado entre as parcelas em aberto, da mais antiga para a mais nova
+                Optional<LoanPaymentAllocationResponse> allocationOpt = loanPaymentService.payLoan(id, amount);
+                return allocationOpt.<ResponseEntity<?>>map(ResponseEntity::ok)
+                                    .orElse(ResponseEntity.notFound().build());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            } catch (IllegalStateException e) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+        });
     }
     
     @PutMapping("/{id}")
     public ResponseEntity<Loan> updateLoan(@PathVariable Long id, @RequestBody CreateLoanRequest request) {
+        if (!loanQuoteService.isValidTerm(request.getTermValue())) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        if (!AmortizationEngine.isValidAlternateDaysInterval(request.getPaymentFrequency(), request.getAlternateDaysInterval())) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        
         Optional<Loan> loanOpt = loanRepository.findById(id);
         Optional<User> userOpt = userRepository.findById(request.getUserId());
         
@@ -132,6 +207,7 @@ public class LoanController {
         
         Loan loan = loanOpt.get();
         User user = userOpt.get();
+        BigDecimal previousAmount = loan.getLoanAmount();
         
         // Atualizar campos básicos
         loan.setUser(user);
@@ -153,6 +229,7 @@ public class LoanController {
         }
         
         Loan savedLoan = loanRepository.save(loan);
+        portfolioCounters.loanChanged(savedLoan.getStatus(), previousAmount, savedLoan.getStatus(), savedLoan.getLoanAmount());
         return ResponseEntity.ok(savedLoan);
     }
     
@@ -165,8 +242,10 @@ public class LoanController {
         }
         
         Loan loan = loanOpt.get();
+        LoanStatus previousStatus = loan.getStatus();
         loan.cancel();
         Loan savedLoan = loanRepository.save(loan);
+        portfolioCounters.loanChanged(previousStatus, loan.getLoanAmount(), savedLoan.getStatus(), savedLoan.getLoanAmount());
         
         return ResponseEntity.ok(savedLoan);
     }
@@ -175,7 +254,12 @@ public class LoanController {
     public ResponseEntity<Void> deleteLoan(@PathVariable Long id) {
         Optional<Loan> loan = loanRepository.findById(id);
         if (loan.isPresent()) {
+            // Parcelas saem em cascata com o empréstimo
+            long paidInstallments = installmentRepository.countByLoanIdAndIsPaidTrue(id);
             loanRepository.deleteById(id);
+            installmentDueIndex.loansRemoved(List.of(id));
+            portfolioCounters.loanChanged(loan.get().getStatus(), loan.get().getLoanAmount(), null, null);
+            portfolioCounters.installmentsPaid(-paidInstallments);
             return ResponseEntity.ok().build();
         }
         return ResponseEntity.notFound().build();
@@ -189,10 +273,43 @@ public class LoanController {
         }
         
         Loan loan = loanOpt.get();
-        List<LoanInstallment> simulatedInstallments = generateSimulatedInstallments(loan);
+        List<LoanInstallment> simulatedInstallments = amortizationEngine.compute(loan).toInstallments(loan);
         return ResponseEntity.ok(simulatedInstallments);
     }
     
+    // Totais do cronograma (juros, total a pagar, último vencimento) sem gerar as parcelas
+    @GetMapping("/{id}/schedule-summary")
+    public ResponseEntity<LoanScheduleSummaryResponse> getScheduleSummary(@PathVariable Long id) {
+        Optional<Loan> loanOpt = loanRepository.findById(id);
+        if (!loanOpt.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        Loan loan = loanOpt.get();
+        AmortizationSummary summary = amortizationEngine.summarize(loan);
+        return ResponseEntity.ok(new LoanScheduleSummaryResponse(loan.getId(), summary.getInstallmentCount(),
+                summary.getFirstInstallment(), summary.getTotalPrincipal(), summary.getTotalInterest(),
+                summary.getTotalDue(), summary.getLastDueDate()));
+    }
+    
+    // Simulação sem empréstimo persistido (cotação para o front de vendas)
+    @PostMapping("/quote")
+    public ResponseEntity<LoanQuoteResponse> quoteLoan(@RequestBody CreateLoanRequest request) {
+        if (!loanQuoteService.isQuotable(request)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(loanQuoteService.quote(request));
+    }
+    
+    // Grade de cotações: vários prazos x várias taxas em uma única chamada
+    @PostMapping("/quote/grid")
+    public ResponseEntity<LoanQuoteGridResponse> quoteLoanGrid(@RequestBody LoanQuoteGridRequest request) {
+        if (!loanQuoteService.isQuotable(request)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(loanQuoteService.quoteGrid(request));
+    }
+    
     private LocalDate calculateEndDate(LocalDate startDate, Integer termValue, PaymentFrequency frequency) {
         LocalDate endDate = startDate;
         
@@ -215,147 +332,4 @@ public class LoanController {
         
         return endDate;
     }
-    
-    private List<LoanInstallment> generateSimulatedInstallments(Loan loan) {
-        List<LoanInstallment> installments = new ArrayList<>();
-        BigDecimal remainingPrincipal = loan.getLoanAmount();
-        LocalDate currentDate = loan.getStartDate();
-        
-        switch (loan.getPaymentType()) {
-            case FIXED_INSTALLMENTS:
-                return generateFixedInstallments(loan, remainingPrincipal, currentDate);
-            case INTEREST_ONLY:
-                return generateInterestOnlyInstallments(loan, remainingPrincipal, currentDate);
-            case FLEXIBLE:
-                return generateFlexibleInstallments(loan, remainingPrincipal, currentDate);
-            default:
-                return generateFixedInstallments(loan, remainingPrincipal, currentDate);
-        }
-    }
-    
-    private List<LoanInstallment> generateFixedInstallments(Loan loan, BigDecimal remainingPrincipal, LocalDate currentDate) {
-        List<LoanInstallment> installments = new ArrayList<>();
-        
-        // Cálculo de juros compostos conforme especificação
-        // Exemplo: R$ 1.000,00 a 20% a.m. em 3 meses
-        // 1º mês: 1000 + 20% = 1200, parcela = 400 + 200 = 600
-        // 2º mês: 800 + 20% = 960, parcela = 400 + 160 = 560  
-        // 3º mês: 400 + 20% = 480, parcela = 400 + 80 = 480
-        
-        BigDecimal totalPrincipal = loan.getLoanAmount();
-        BigDecimal monthlyInterestRate = loan.getInterestRate(); // Já é mensal (ex: 0.20 para 20%)
-        
-        for (int i = 1; i <= loan.getTermValue(); i++) {
-            // Calcular juros sobre o saldo devedor atual
-            BigDecimal interestAmount = remainingPrincipal.multiply(monthlyInterestRate).setScale(2, RoundingMode.HALF_UP);
-            
-            // Calcular valor da parcela (principal + juros)
-            BigDecimal principalPerInstallment = totalPrincipal.divide(BigDecimal.valueOf(loan.getTermValue()), 2, RoundingMode.HALF_UP);
-            
-            // Para a última parcela, ajustar o principal para não ter diferença
-            BigDecimal currentPrincipalAmount = principalPerInstallment;
-            if (i == loan.getTermValue()) {
-                currentPrincipalAmount = remainingPrincipal;
-            }
-            
-            BigDecimal totalDueAmount = currentPrincipalAmount.add(interestAmount);
-            
-            LoanInstallment installment = createInstallment(loan, i, currentDate, currentPrincipalAmount, interestAmount, totalDueAmount);
-            installments.add(installment);
-            
-            // Atualizar saldo devedor e próxima data
-            remainingPrincipal = remainingPrincipal.subtract(currentPrincipalAmount);
-            currentDate = calculateNextDate(currentDate, loan.getPaymentFrequency(), loan.getAlternateDaysInterval());
-        }
-        
-        return installments;
-    }
-    
-    private List<LoanInstallment> generateInterestOnlyInstallments(Loan loan, BigDecimal remainingPrincipal, LocalDate currentDate) {
-        List<LoanInstallment> installments = new ArrayList<>();
-        BigDecimal monthlyInterestRate = loan.getInterestRate(); // Já é mensal (ex: 0.20 para 20%)
-        
-        for (int i = 1; i <= loan.getTermValue(); i++) {
-            // Calcular juros sobre o saldo devedor atual
-            BigDecimal interestAmount = remainingPrincipal.multiply(monthlyInterestRate).setScale(2, RoundingMode.HALF_UP);
-            
-            // Para as parcelas normais, só paga juros
-            BigDecimal currentPrincipalAmount = BigDecimal.ZERO;
-            if (i == loan.getTermValue()) {
-                // Na última parcela, paga o principal + juros
-                currentPrincipalAmount = remainingPrincipal;
-            }
-            
-            BigDecimal totalDueAmount = currentPrincipalAmount.add(interestAmount);
-            
-            LoanInstallment installment = createInstallment(loan, i, currentDate, currentPrincipalAmount, interestAmount, totalDueAmount);
-            installments.add(installment);
-            
-            // Atualizar saldo devedor e próxima data
-            remainingPrincipal = remainingPrincipal.subtract(currentPrincipalAmount);
-            currentDate = calculateNextDate(currentDate, loan.getPaymentFrequency(), loan.getAlternateDaysInterval());
-        }
-        
-        return installments;
-    }
-    
-    private List<LoanInstallment> generateFlexibleInstallments(Loan loan, BigDecimal remainingPrincipal, LocalDate currentDate) {
-        List<LoanInstallment> installments = new ArrayList<>();
-        BigDecimal monthlyInterestRate = loan.getInterestRate(); // Já é mensal (ex: 0.20 para 20%)
-        
-        // Para pagamento flexível, criamos parcelas com valores variados
-        // O cliente pode pagar conforme sua disponibilidade
-        for (int i = 1; i <= loan.getTermValue(); i++) {
-            // Calcular juros sobre o saldo devedor atual
-            BigDecimal interestAmount = remainingPrincipal.multiply(monthlyInterestRate).setScale(2, RoundingMode.HALF_UP);
-            
-            // Para flexível, sugerimos um valor mínimo (juros + parte do principal)
-            BigDecimal suggestedPrincipalAmount = remainingPrincipal.divide(BigDecimal.valueOf(loan.getTermValue() - i + 1), 2, RoundingMode.HALF_UP);
-            BigDecimal currentPrincipalAmount = suggestedPrincipalAmount;
-            
-            if (i == loan.getTermValue()) {
-                currentPrincipalAmount = remainingPrincipal;
-            }
-            
-            BigDecimal totalDueAmount = currentPrincipalAmount.add(interestAmount);
-            
-            LoanInstallment installment = createInstallment(loan, i, currentDate, currentPrincipalAmount, interestAmount, totalDueAmount);
-            installments.add(installment);
-            
-            // Atualizar saldo devedor e próxima data
-            remainingPrincipal = remainingPrincipal.subtract(currentPrincipalAmount);
-            currentDate = calculateNextDate(currentDate, loan.getPaymentFrequency(), loan.getAlternateDaysInterval());
-        }
-        
-        return installments;
-    }
-    
-    private LoanInstallment createInstallment(Loan loan, int installmentNumber, LocalDate dueDate, 
-                                             BigDecimal principalAmount, BigDecimal interestAmount, BigDecimal totalDueAmount) {
-        LoanInstallment installment = new LoanInstallment();
-        installment.setInstallmentNumber(installmentNumber);
-        installment.setDueDate(dueDate);
-        installment.setPrincipalAmount(principalAmount);
-        installment.setInterestAmount(interestAmount);
-        installment.setTotalDueAmount(totalDueAmount);
-        installment.setPaidAmount(BigDecimal.ZERO);
-        installment.setIsPaid(false);
-        installment.setLoan(loan);
-        return installment;
-    }
-    
-    private LocalDate calculateNextDate(LocalDate currentDate, PaymentFrequency frequency, Integer alternateDaysInterval) {
-        switch (frequency) {
-            case DAILY:
-                return currentDate.plusDays(1);
-            case WEEKLY:
-                return currentDate.plusWeeks(1);
-            case MONTHLY:
-                return currentDate.plusMonths(1);
-            case ALTERNATE_DAYS:
-                return currentDate.plusDays(alternateDaysInterval != null ? alternateDaysInterval : 2);
-            default:
-                return currentDate.plusMonths(1);
-        }
-    }
-}
+}
\ No newline at end of file
@@ -4,12 +4,24 @@ import com.finman.model.Loan;
 import com.finman.model.LoanInstallment;
 import com.finman.repository.LoanInstallmentRepository;
 import com.finman.repository.LoanRepository;
+import com.finman.service.IdempotencyService;
+import com.finman.service.InstallmentDueIndex;
+import com.finman.service.LoanPaymentService;
+import com.finman.service.PaymentImportService;
+import com.finman.service.PortfolioCounters;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,6 +36,21 @@ public class LoanInstallmentController {
     @Autowired
     private LoanRepository loanRepository;
     
+    @Autowired
+    private LoanPaymentService loanPaymentService;
+    
+    @Autowired
+    private PaymentImportService paymentImportService;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    @Autowired
+    private InstallmentDueIndex installmentDueIndex;
+    
+    @Autowired
+    private PortfolioCounters portfolioCounters;
+    
     @GetMapping
     public ResponseEntity<List<LoanInstallment>> getAllInstallments() {
         List<LoanInstallment> installments = installmentRepository.findAll();
@@ -45,8 +72,31 @@ public class LoanInstallmentController {
     
     @GetMapping("/loan/{loanId}/overdue")
     public ResponseEntity<List<LoanInstallment>> getOverdueInstallments(@PathVariable Long loanId) {
-        List<LoanInstallment> installments = installmentRepository.findByLoanIdAndDueDateBeforeAndIsPaidFalse(loanId, LocalDate.now());
-        return ResponseEntity.ok(installments);
+        if (!installmentDueIndex.isReady()) {
+            return ResponseEntity.ok(installmentRepository.findByLoanIdAndDueDateBeforeAndIsPaidFalse(loanId, LocalDate.now()));
+        }
+        return ResponseEntity.ok(findInDueOrder(installmentDueIndex.findOverdue(loanId, LocalDate.now())));
+    }
+    
+    @GetMapping("/overdue")
+    public ResponseEntity<List<LoanInstallment>> getAllOverdueInstallments() {
+        if (!installmentDueIndex.isReady()) {
+            return ResponseEntity.ok(installmentRepository.findByDueDateBeforeAndIsPaidFalse(LocalDate.now()));
+        }
+        return ResponseEntity.ok(findInDueOrder(installmentDueIndex.findOverdue(LocalDate.now())));
+    }
+    
+    // Parcelas em aberto vencendo de hoje até daqui a N dias
+    @GetMapping("/upcoming")
+    public ResponseEntity<List<LoanInstallment>> getUpcomingInstallments(@RequestParam(defaultValue = "7") int days) {
+        if (days < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        LocalDate today = LocalDate.now();
+        if (!installmentDueIndex.isReady()) {
+            return ResponseEntity.ok(installmentRepository.findByDueDateBetweenAndIsPaidFalse(today, today.plusDays(days)));
+        }
+        return ResponseEntity.ok(findInDueOrder(installmentDueIndex.findDueBetween(today, today.plusDays(days))));
     }
     
     @PostMapping("/loan/{loanId}")
@@ -61,22 +111,34 @@ public class LoanInstallmentController {
         installment.setPaidAmount(BigDecimal.ZERO);
         
         LoanInstallment savedInstallment = installmentRepository.save(installment);
+        installmentDueIndex.installmentsCreated(List.of(savedInstallment));
         return ResponseEntity.ok(savedInstallment);
     }
     
     @PutMapping("/{id}/pay")
-    public ResponseEntity<LoanInstallment> payInstallment(@PathVariable Long id, @RequestParam BigDecimal amount) {
-        Optional<LoanInstallment> installmentOpt = installmentRepository.findById(id);
-        
-        if (!installmentOpt.isPresent()) {
-            return ResponseEntity.notFound().build();
-        }
-        
-        LoanInstallment installment = installmentOpt.get();
-        installment.addPayment(amount);
-        
-        LoanInstallment savedInstallment = installmentRepository.save(installment);
-        return ResponseEntity.ok(savedInstallment);
+    public ResponseEntity<?> payInstallment(@PathVariable Long id, @RequestParam BigDecimal amount,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        // Repetições com a mesma Idempotency-Key devolvem a resposta original sem pagar de novo
+        return idempotencyService.execute("installment-pay:" + id, idempotencyKey, IdempotencyService.amountFingerprint(amount), () -> {
+            try {
+                // Pagamento aplicado atomicamente no banco, com atualização do saldo do empréstimo
+                Optional<LoanInstallment> installmentOpt = loanPaymentService.payInstallment(id, amount);
+                return installmentOpt.<ResponseEntity<?>>map(ResponseEntity::ok)
+                                     .orElse(ResponseEntity.notFound().build());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            } catch (IllegalStateException e) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+        });
+    }
+    
+    // Importação do arquivo de pagamentos dos cobradores; o CSV é lido e o relatório escrito em streaming
+    @PostMapping(value = "/payments/import", consumes = {"text/csv", "text/plain"})
+    public void importPayments(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        paymentImportService.importPayments(
+                new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8), response.getWriter());
     }
     
     @PutMapping("/{id}/mark-as-paid")
@@ -88,11 +150,16 @@ public class LoanInstallmentController {
         }
         
         LoanInstallment installment = installmentOpt.get();
+        boolean wasPaid = Boolean.TRUE.equals(installment.getIsPaid());
         installment.setIsPaid(true);
         installment.setPaidAmount(installment.getAmount());
         installment.setPaidDate(LocalDate.now());
         
         LoanInstallment savedInstallment = installmentRepository.save(installment);
+        installmentDueIndex.installmentsRemoved(List.of(id));
+        if (!wasPaid) {
+            portfolioCounters.installmentsPaid(1);
+        }
         return ResponseEntity.ok(savedInstallment);
     }
     
@@ -101,8 +168,23 @@ public class LoanInstallmentController {
         Optional<LoanInstallment> installment = installmentRepository.findById(id);
         if (installment.isPresent()) {
             installmentRepository.deleteById(id);
+            installmentDueIndex.installmentsRemoved(List.of(id));
+            if (Boolean.TRUE.equals(installment.get().getIsPaid())) {
+                portfolioCounters.installmentsPaid(-1);
+            }
             return ResponseEntity.ok().build();
         }
         return ResponseEntity.notFound().build();
     }
+    
+    // Carrega pela chave primária as parcelas apontadas pelo índice, em ordem de vencimento
+    private List<LoanInstallment> findInDueOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<LoanInstallment> installments = installmentRepository.findAllById(ids);
+        installments.sort(Comparator.comparing(LoanInstallment::getDueDate)
+                                    .thenComparing(LoanInstallment::getInstallmentNumber));
+        return installments;
+    }
 }
@@ -1,11 +1,22 @@
 package com.finman.controller;
 
+import com.finman.model.Document;
+import com.finman.model.Loan;
 import com.finman.model.User;
+import com.finman.repository.DocumentRepository;
+import com.finman.repository.LoanInstallmentRepository;
+import com.finman.repository.LoanRepository;
 import com.finman.repository.UserRepository;
+import com.finman.service.DocumentContentCache;
+import com.finman.service.FileStorageService;
+import com.finman.service.InstallmentDueIndex;
+import com.finman.service.PortfolioCounters;
+import com.finman.service.ThumbnailService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +28,30 @@ public class UserController {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private LoanRepository loanRepository;
+    
+    @Autowired
+    private LoanInstallmentRepository installmentRepository;
+    
+    @Autowired
+    private DocumentRepository documentRepository;
+    
+    @Autowired
+    private InstallmentDueIndex installmentDueIndex;
+    
+    @Autowired
+    private PortfolioCounters portfolioCounters;
+    
+    @Autowired
+    private FileStorageService fileStorageService;
+    
+    @Autowired
+    private ThumbnailService thumbnailService;
+    
+    @Autowired
+    private DocumentContentCache documentContentCache;
+    
     @GetMapping
     public ResponseEntity<List<User>> getAllUsers() {
         List<User> users = userRepository.findAll();
@@ -33,6 +68,7 @@ public class UserController {
     @PostMapping
     public ResponseEntity<User> createUser(@RequestBody User user) {
         User savedUser = userRepository.save(user);
+        portfolioCounters.usersChanged(1);
         return ResponseEntity.ok(savedUser);
     }
     
@@ -57,7 +93,29 @@ public class UserController {
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
         Optional<User> user = userRepository.findById(id);
         if (user.isPresent()) {
+            // Empréstimos (com parcelas) e documentos saem em cascata junto com o cliente
+            List<Loan> loans = loanRepository.findByUser_Id(id);
+            List<Long> loanIds = loans.stream().map(Loan::getId).toList();
+            long paidInstallments = loanIds.isEmpty() ? 0 : installmentRepository.countByLoanIdInAndIsPaidTrue(loanIds);
+            List<Document> documents = documentRepository.findByUser_Id(id);
             userRepository.deleteById(id);
+            // Arquivos compartilhados por conteúdo só saem se nenhum outro documento os referencia
+            for (Document document : documents) {
+                documentContentCache.documentDeleted(document);
+                try {
+                    fileStorageService.deleteDocumentFile(document);
+                    thumbnailService.documentDeleted(document);
+                } catch (IOException e) {
+                    // Cliente já excluído; o arquivo fica órfão no disco
+                }
+            }
+            installmentDueIndex.loansRemoved(loanIds);
+            for (Loan loan : loans) {
+                portfolioCounters.loanChanged(loan.getStatus(), loan.getLoanAmount(), null, null);
+            }
+            portfolioCounters.installmentsPaid(-paidInstallments);
+            portfolioCounters.documentsChanged(-documents.size());
+            portfolioCounters.usersChanged(-1);
             return ResponseEntity.ok().build();
         }
         return ResponseEntity.notFound().build();
@@ -0,0 +1,68 @@
+package com.finman.dto;
+
+import com.finman.model.enums.LoanStatus;
+import java.math.BigDecimal;
+import java.util.List;
+
+// Resultado do rateio de um pagamento do empréstimo entre as parcelas em aberto
+public class LoanPaymentAllocationResponse {
+    private final Long loanId;
+    private final BigDecimal amount;
+    private final LoanStatus loanStatus;
+    private final List<Allocation> allocations;
+
+    public LoanPaymentAllocationResponse(Long loanId, BigDecimal amount, LoanStatus loanStatus,
+                                         List<Allocation> allocations) {
+        this.loanId = loanId;
+        this.amount = amount;
+        this.loanStatus = loanStatus;
+        this.allocations = allocations;
+    }
+
+    // Getters
+    public Long getLoanId() {
+        return loanId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public LoanStatus getLoanStatus() {
+        return loanStatus;
+    }
+
+    public List<Allocation> getAllocations() {
+        return allocations;
+    }
+
+    public static class Allocation {
+        private final Long installmentId;
+        private final Integer installmentNumber;
+        private final BigDecimal amount;
+        private final boolean settled;
+
+        public Allocation(Long installmentId, Integer installmentNumber, BigDecimal amount, boolean settled) {
+            this.installmentId = installmentId;
+            this.installmentNumber = installmentNumber;
+            this.amount = amount;
+            this.settled = settled;
+        }
+
+        public Long getInstallmentId() {
+            return installmentId;
+        }
+
+        public Integer getInstallmentNumber() {
+            return installmentNumber;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public boolean isSettled() {
+            return settled;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.finman.dto;
+
+import com.finman.model.enums.PaymentFrequency;
+import com.finman.model.enums.PaymentType;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public class LoanQuoteGridRequest {
+    private BigDecimal loanAmount;
+    private List<Integer> termValues;
+    private List<BigDecimal> interestRates;
+    private PaymentType paymentType;
+    // Necessários apenas quando includeSchedules = true (datas de vencimento)
+    private PaymentFrequency paymentFrequency;
+    private Integer alternateDaysInterval;
+    private LocalDate startDate;
+    private boolean includeSchedules;
+
+    // Getters and Setters
+    public BigDecimal getLoanAmount() {
+        return loanAmount;
+    }
+
+    public void setLoanAmount(BigDecimal loanAmount) {
+        this.loanAmount = loanAmount;
+    }
+
+    public List<Integer> getTermValues() {
+        return termValues;
+    }
+
+    public void setTermValues(List<Integer> termValues) {
+        this.termValues = termValues;
+    }
+
+    public List<BigDecimal> getInterestRates() {
+        return interestRates;
+    }
+
+    public void setInterestRates(List<BigDecimal> interestRates) {
+        this.interestRates = interestRates;
+    }
+
+    public PaymentType getPaymentType() {
+        return paymentType;
+    }
+
+    public void setPaymentType(PaymentType paymentType) {
+        this.paymentType = paymentType;
+    }
+
+    public PaymentFrequency getPaymentFrequency() {
+        return paymentFrequency;
+    }
+
+    public void setPaymentFrequency(PaymentFrequency paymentFrequency) {
+        this.paymentFrequency = paymentFrequency;
+    }
+
+    public Integer getAlternateDaysInterval() {
+        return alternateDaysInterval;
+    }
+
+    public void setAlternateDaysInterval(Integer alternateDaysInterval) {
+        this.alternateDaysInterval = alternateDaysInterval;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    public boolean isIncludeSchedules() {
+        return includeSchedules;
+    }
+
+    public void setIncludeSchedules(boolean includeSchedules) {
+        this.includeSchedules = includeSchedules;
+    }
+}
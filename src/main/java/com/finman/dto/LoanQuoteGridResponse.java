@@ -0,0 +1,90 @@
+package com.finman.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.finman.model.enums.PaymentType;
+import java.math.BigDecimal;
+import java.util.List;
+
+// Matriz de cotações: uma linha por prazo (termValues), uma coluna por taxa (interestRates)
+public class LoanQuoteGridResponse {
+    private final BigDecimal loanAmount;
+    private final PaymentType paymentType;
+    private final List<Integer> termValues;
+    private final List<BigDecimal> interestRates;
+    private final List<List<GridCell>> cells;
+
+    public LoanQuoteGridResponse(BigDecimal loanAmount, PaymentType paymentType, List<Integer> termValues,
+                                 List<BigDecimal> interestRates, List<List<GridCell>> cells) {
+        this.loanAmount = loanAmount;
+        this.paymentType = paymentType;
+        this.termValues = termValues;
+        this.interestRates = interestRates;
+        this.cells = cells;
+    }
+
+    // Getters
+    public BigDecimal getLoanAmount() {
+        return loanAmount;
+    }
+
+    public PaymentType getPaymentType() {
+        return paymentType;
+    }
+
+    public List<Integer> getTermValues() {
+        return termValues;
+    }
+
+    public List<BigDecimal> getInterestRates() {
+        return interestRates;
+    }
+
+    public List<List<GridCell>> getCells() {
+        return cells;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class GridCell {
+        private final Integer termValue;
+        private final BigDecimal interestRate;
+        private final BigDecimal firstInstallment;
+        private final BigDecimal totalInterest;
+        private final BigDecimal totalDue;
+        private final List<LoanQuoteResponse.InstallmentQuote> installments;
+
+        public GridCell(Integer termValue, BigDecimal interestRate, BigDecimal firstInstallment,
+                        BigDecimal totalInterest, BigDecimal totalDue,
+                        List<LoanQuoteResponse.InstallmentQuote> installments) {
+            this.termValue = termValue;
+            this.interestRate = interestRate;
+            this.firstInstallment = firstInstallment;
+            this.totalInterest = totalInterest;
+            this.totalDue = totalDue;
+            this.installments = installments;
+        }
+
+        public Integer getTermValue() {
+            return termValue;
+        }
+
+        public BigDecimal getInterestRate() {
+            return interestRate;
+        }
+
+        public BigDecimal getFirstInstallment() {
+            return firstInstallment;
+        }
+
+        public BigDecimal getTotalInterest() {
+            return totalInterest;
+        }
+
+        public BigDecimal getTotalDue() {
+            return totalDue;
+        }
+
+        public List<LoanQuoteResponse.InstallmentQuote> getInstallments() {
+            return installments;
+        }
+    }
+}
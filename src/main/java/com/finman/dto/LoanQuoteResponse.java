@@ -0,0 +1,121 @@
+package com.finman.dto;
+
+import com.finman.model.enums.PaymentFrequency;
+import com.finman.model.enums.PaymentType;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+// Resposta imutável da cotação: fica guardada em cache e é devolvida como está
+public class LoanQuoteResponse {
+    private final BigDecimal loanAmount;
+    private final BigDecimal interestRate;
+    private final Integer termValue;
+    private final PaymentFrequency paymentFrequency;
+    private final PaymentType paymentType;
+    private final Integer alternateDaysInterval;
+    private final LocalDate startDate;
+    private final LocalDate lastDueDate;
+    private final BigDecimal totalInterest;
+    private final BigDecimal totalDue;
+    private final List<InstallmentQuote> installments;
+
+    public LoanQuoteResponse(BigDecimal loanAmount, BigDecimal interestRate, Integer termValue,
+                             PaymentFrequency paymentFrequency, PaymentType paymentType,
+                             Integer alternateDaysInterval, LocalDate startDate, LocalDate lastDueDate,
+                             BigDecimal totalInterest, BigDecimal totalDue, List<InstallmentQuote> installments) {
+        this.loanAmount = loanAmount;
+        this.interestRate = interestRate;
+        this.termValue = termValue;
+        this.paymentFrequency = paymentFrequency;
+        this.paymentType = paymentType;
+        this.alternateDaysInterval = alternateDaysInterval;
+        this.startDate = startDate;
+        this.lastDueDate = lastDueDate;
+        this.totalInterest = totalInterest;
+        this.totalDue = totalDue;
+        this.installments = List.copyOf(installments);
+    }
+
+    // Getters
+    public BigDecimal getLoanAmount() {
+        return loanAmount;
+    }
+
+    public BigDecimal getInterestRate() {
+        return interestRate;
+    }
+
+    public Integer getTermValue() {
+        return termValue;
+    }
+
+    public PaymentFrequency getPaymentFrequency() {
+        return paymentFrequency;
+    }
+
+    public PaymentType getPaymentType() {
+        return paymentType;
+    }
+
+    public Integer getAlternateDaysInterval() {
+        return alternateDaysInterval;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getLastDueDate() {
+        return lastDueDate;
+    }
+
+    public BigDecimal getTotalInterest() {
+        return totalInterest;
+    }
+
+    public BigDecimal getTotalDue() {
+        return totalDue;
+    }
+
+    public List<InstallmentQuote> getInstallments() {
+        return installments;
+    }
+
+    public static class InstallmentQuote {
+        private final Integer installmentNumber;
+        private final LocalDate dueDate;
+        private final BigDecimal principalAmount;
+        private final BigDecimal interestAmount;
+        private final BigDecimal totalDueAmount;
+
+        public InstallmentQuote(Integer installmentNumber, LocalDate dueDate, BigDecimal principalAmount,
+                                BigDecimal interestAmount, BigDecimal totalDueAmount) {
+            this.installmentNumber = installmentNumber;
+            this.dueDate = dueDate;
+            this.principalAmount = principalAmount;
+            this.interestAmount = interestAmount;
+            this.totalDueAmount = totalDueAmount;
+        }
+
+        public Integer getInstallmentNumber() {
+            return installmentNumber;
+        }
+
+        public LocalDate getDueDate() {
+            return dueDate;
+        }
+
+        public BigDecimal getPrincipalAmount() {
+            return principalAmount;
+        }
+
+        public BigDecimal getInterestAmount() {
+            return interestAmount;
+        }
+
+        public BigDecimal getTotalDueAmount() {
+            return totalDueAmount;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.finman.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public class LoanScheduleSummaryResponse {
+    private final Long loanId;
+    private final Integer installmentCount;
+    private final BigDecimal firstInstallment;
+    private final BigDecimal totalPrincipal;
+    private final BigDecimal totalInterest;
+    private final BigDecimal totalDue;
+    private final LocalDate lastDueDate;
+
+    public LoanScheduleSummaryResponse(Long loanId, Integer installmentCount, BigDecimal firstInstallment,
+                                       BigDecimal totalPrincipal, BigDecimal totalInterest, BigDecimal totalDue,
+                                       LocalDate lastDueDate) {
+        this.loanId = loanId;
+        this.installmentCount = installmentCount;
+        this.firstInstallment = firstInstallment;
+        this.totalPrincipal = totalPrincipal;
+        this.totalInterest = totalInterest;
+        this.totalDue = totalDue;
+        this.lastDueDate = lastDueDate;
+    }
+
+    // Getters
+    public Long getLoanId() {
+        return loanId;
+    }
+
+    public Integer getInstallmentCount() {
+        return installmentCount;
+    }
+
+    public BigDecimal getFirstInstallment() {
+        return firstInstallment;
+    }
+
+    public BigDecimal getTotalPrincipal() {
+        return totalPrincipal;
+    }
+
+    public BigDecimal getTotalInterest() {
+        return totalInterest;
+    }
+
+    public BigDecimal getTotalDue() {
+        return totalDue;
+    }
+
+    public LocalDate getLastDueDate() {
+        return lastDueDate;
+    }
+}
@@ -0,0 +1,143 @@
+package com.finman.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Métricas do dashboard gravadas uma vez por dia, para os gráficos de tendência
+@Entity
+@Table(name = "dashboard_snapshots")
+public class DashboardSnapshot {
+    
+    @Id
+    @Column(name = "snapshot_date")
+    private LocalDate snapshotDate;
+    
+    @Column(name = "active_loans", nullable = false)
+    private Long activeLoans;
+    
+    @Column(name = "total_value", nullable = false, precision = 18, scale = 2)
+    private BigDecimal totalValue;
+    
+    @Column(name = "outstanding_balance", nullable = false, precision = 18, scale = 2)
+    private BigDecimal outstandingBalance;
+    
+    @Column(name = "approved_loans", nullable = false)
+    private Long approvedLoans;
+    
+    @Column(name = "total_approved", nullable = false, precision = 18, scale = 2)
+    private BigDecimal totalApproved;
+    
+    @Column(name = "paid_installments", nullable = false)
+    private Long paidInstallments;
+    
+    @Column(name = "overdue_installments", nullable = false)
+    private Long overdueInstallments;
+    
+    @Column(name = "total_users", nullable = false)
+    private Long totalUsers;
+    
+    @Column(name = "total_documents", nullable = false)
+    private Long totalDocuments;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    // Construtores
+    public DashboardSnapshot() {}
+    
+    public DashboardSnapshot(LocalDate snapshotDate) {
+        this.snapshotDate = snapshotDate;
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    // Getters e Setters
+    public LocalDate getSnapshotDate() {
+        return snapshotDate;
+    }
+    
+    public void setSnapshotDate(LocalDate snapshotDate) {
+        this.snapshotDate = snapshotDate;
+    }
+    
+    public Long getActiveLoans() {
+        return activeLoans;
+    }
+    
+    public void setActiveLoans(Long activeLoans) {
+        this.activeLoans = activeLoans;
+    }
+    
+    public BigDecimal getTotalValue() {
+        return totalValue;
+    }
+    
+    public void setTotalValue(BigDecimal totalValue) {
+        this.totalValue = totalValue;
+    }
+    
+    public BigDecimal getOutstandingBalance() {
+        return outstandingBalance;
+    }
+    
+    public void setOutstandingBalance(BigDecimal outstandingBalance) {
+        this.outstandingBalance = outstandingBalance;
+    }
+    
+    public Long getApprovedLoans() {
+        return approvedLoans;
+    }
+    
+    public void setApprovedLoans(Long approvedLoans) {
+        this.approvedLoans = approvedLoans;
+    }
+    
+    public BigDecimal getTotalApproved() {
+        return totalApproved;
+    }
+    
+    public void setTotalApproved(BigDecimal totalApproved) {
+        this.totalApproved = totalApproved;
+    }
+    
+    public Long getPaidInstallments() {
+        return paidInstallments;
+    }
+    
+    public void setPaidInstallments(Long paidInstallments) {
+        this.paidInstallments = paidInstallments;
+    }
+    
+    public Long getOverdueInstallments() {
+        return overdueInstallments;
+    }
+    
+    public void setOverdueInstallments(Long overdueInstallments) {
+        this.overdueInstallments = overdueInstallments;
+    }
+    
+    public Long getTotalUsers() {
+        return totalUsers;
+    }
+    
+    public void setTotalUsers(Long totalUsers) {
+        this.totalUsers = totalUsers;
+    }
+    
+    public Long getTotalDocuments() {
+        return totalDocuments;
+    }
+    
+    public void setTotalDocuments(Long totalDocuments) {
+        this.totalDocuments = totalDocuments;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
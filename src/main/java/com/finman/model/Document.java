@@ -6,7 +6,7 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = @Index(name = "idx_documents_content_hash", columnList = "content_hash"))
 public class Document {
     
     @Id
@@ -31,6 +31,10 @@ public class Document {
     @Column(name = "file_size")
     private Long fileSize;
     
+    // SHA-256 do conteúdo (hex); documentos com o mesmo hash compartilham o arquivo em disco
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
     @Column(name = "content_type")
     private String contentType;
     
@@ -116,6 +120,14 @@ public class Document {
         this.fileSize = fileSize;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
     public String getContentType() {
         return contentType;
     }
@@ -12,7 +12,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "loans")
+@Table(name = "loans", indexes = @Index(name = "idx_loans_status", columnList = "status"))
 public class Loan {
     
     @Id
@@ -9,11 +9,16 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "loan_installments")
+@Table(name = "loan_installments", indexes = {
+    @Index(name = "idx_loan_installments_loan", columnList = "loan_id"),
+    @Index(name = "idx_loan_installments_paid_due", columnList = "is_paid, due_date")
+})
 public class LoanInstallment {
     
+    // Sequência com pool (allocationSize) para que o Hibernate consiga agrupar os INSERTs em batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_installment_seq")
+    @SequenceGenerator(name = "loan_installment_seq", sequenceName = "loan_installments_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,54 @@
+package com.finman.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Conteúdo gravado no armazenamento cujo documento ainda não foi salvo (um pino por upload em curso)
+@Entity
+@Table(name = "pending_contents")
+public class PendingContent {
+    
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
+    @Column(nullable = false)
+    private Integer pins;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    // Construtores
+    public PendingContent() {}
+    
+    public PendingContent(String contentHash, Integer pins) {
+        this.contentHash = contentHash;
+        this.pins = pins;
+        this.updatedAt = LocalDateTime.now();
+    }
+    
+    // Getters e Setters
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public Integer getPins() {
+        return pins;
+    }
+    
+    public void setPins(Integer pins) {
+        this.pins = pins;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -11,8 +11,10 @@ import java.util.List;
 @Table(name = "transactions")
 public class Transaction {
     
+    // Sequência com pool (allocationSize) para que o Hibernate consiga agrupar os INSERTs em batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,15 @@
+package com.finman.repository;
+
+import com.finman.model.DashboardSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DashboardSnapshotRepository extends JpaRepository<DashboardSnapshot, LocalDate> {
+    
+    // Busca por faixa na chave primária (data)
+    List<DashboardSnapshot> findBySnapshotDateBetweenOrderBySnapshotDate(LocalDate from, LocalDate to);
+}
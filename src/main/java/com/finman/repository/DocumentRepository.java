@@ -2,9 +2,15 @@ package com.finman.repository;
 
 import com.finman.model.Document;
 import com.finman.model.enums.DocumentType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,4 +26,35 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
     Optional<Document> findByUser_IdAndDocumentTypeAndIsVerified(Long userId, DocumentType documentType, Boolean isVerified);
     
     long countByUser_IdAndDocumentType(Long userId, DocumentType documentType);
+    
+    // Referências ao arquivo compartilhado: o arquivo só sai do disco quando chega a zero
+    long countByContentHash(String contentHash);
+    
+    // Documentos ainda no formato antigo (UUID_nome), em lotes por id para a migração
+    List<Document> findByContentHashIsNullAndIdGreaterThanOrderById(Long id, Pageable pageable);
+    
+    // Só os campos do arquivo, e só se o documento ainda não foi migrado: não sobrescreve alterações simultâneas
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.fileName = :fileName, d.contentHash = :contentHash, d.fileSize = :fileSize, " +
+           "d.updatedAt = :updatedAt WHERE d.id = :id AND d.contentHash IS NULL")
+    int adoptStoredFile(@Param("id") Long id, @Param("fileName") String fileName, @Param("contentHash") String contentHash,
+                        @Param("fileSize") Long fileSize, @Param("updatedAt") LocalDateTime updatedAt);
+    
+    // Arquivos frios: todos os documentos que os referenciam foram verificados antes do corte
+    @Query("SELECT d.contentHash AS contentHash, MAX(d.contentType) AS contentType FROM Document d " +
+           "WHERE d.contentHash > :after GROUP BY d.contentHash " +
+           "HAVING MIN(CASE WHEN d.isVerified = true AND d.verifiedAt < :cutoff THEN 1 ELSE 0 END) = 1 " +
+           "ORDER BY d.contentHash")
+    List<ColdCandidate> findColdCandidates(@Param("after") String after, @Param("cutoff") LocalDateTime cutoff,
+                                           Pageable pageable);
+    
+    @Query("SELECT COALESCE(SUM(d.fileSize), 0) FROM Document d")
+    long sumFileSize();
+    
+    interface ColdCandidate {
+        String getContentHash();
+        
+        String getContentType();
+    }
 }
@@ -2,10 +2,17 @@ package com.finman.repository;
 
 import com.finman.model.LoanInstallment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface LoanInstallmentRepository extends JpaRepository<LoanInstallment, Long> {
@@ -19,4 +26,82 @@ public interface LoanInstallmentRepository extends JpaRepository<LoanInstallment
     List<LoanInstallment> findByLoanIdAndDueDateBeforeAndIsPaidFalse(Long loanId, LocalDate date);
     
     List<LoanInstallment> findByDueDateBeforeAndIsPaidFalse(LocalDate date);
+    
+    List<LoanInstallment> findByDueDateBetweenAndIsPaidFalse(LocalDate from, LocalDate to);
+    
+    long countByIsPaidTrue();
+    
+    long countByLoanIdAndIsPaidTrue(Long loanId);
+    
+    long countByLoanIdInAndIsPaidTrue(Collection<Long> loanIds);
+    
+    long countByDueDateBeforeAndIsPaidFalse(LocalDate date);
+    
+    // Soma o pagamento direto no banco (sem ler-modificar-gravar); só afeta parcelas ainda em aberto
+    @Modifying
+    @Query("UPDATE LoanInstallment i SET i.paidAmount = i.paidAmount + :amount, " +
+           "i.isPaid = CASE WHEN i.paidAmount + :amount >= i.totalDueAmount THEN true ELSE false END, " +
+           "i.paidAt = CASE WHEN i.paidAmount + :amount >= i.totalDueAmount THEN :now ELSE i.paidAt END, " +
+           "i.updatedAt = :now " +
+           "WHERE i.id = :id AND i.isPaid = false")
+    int applyPayment(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+    
+    @Query("SELECT i.id AS installmentId, i.loan.id AS loanId, i.loan.user.id AS userId, i.isPaid AS paid " +
+           "FROM LoanInstallment i WHERE i.id = :id")
+    Optional<PaymentTarget> findPaymentTarget(@Param("id") Long id);
+    
+    @Query("SELECT i.id AS installmentId, i.loan.id AS loanId, i.loan.user.id AS userId, i.isPaid AS paid " +
+           "FROM LoanInstallment i WHERE i.id IN :ids")
+    List<PaymentTarget> findPaymentTargets(@Param("ids") Collection<Long> ids);
+    
+    // Parcela em aberto mais antiga (vencimento, depois número) de cada empréstimo
+    @Query("SELECT i.id AS installmentId, i.loan.id AS loanId, i.loan.user.id AS userId, i.isPaid AS paid " +
+           "FROM LoanInstallment i WHERE i.loan.id IN :loanIds AND i.isPaid = false " +
+           "AND NOT EXISTS (SELECT j.id FROM LoanInstallment j WHERE j.loan.id = i.loan.id AND j.isPaid = false " +
+           "AND (j.dueDate < i.dueDate OR (j.dueDate = i.dueDate AND j.installmentNumber < i.installmentNumber)))")
+    List<PaymentTarget> findOldestUnpaidByLoanIds(@Param("loanIds") Collection<Long> loanIds);
+    
+    @Query("SELECT i.id FROM LoanInstallment i WHERE i.id IN :ids AND i.isPaid = true")
+    List<Long> findPaidIds(@Param("ids") Collection<Long> ids);
+    
+    // Parcelas em aberto na ordem do rateio: vencimento mais antigo primeiro
+    @Query("SELECT i.id AS installmentId, i.installmentNumber AS installmentNumber, " +
+           "i.totalDueAmount AS totalDueAmount, i.paidAmount AS paidAmount " +
+           "FROM LoanInstallment i WHERE i.loan.id = :loanId AND i.isPaid = false " +
+           "ORDER BY i.dueDate, i.installmentNumber")
+    List<OpenInstallment> findOpenInstallmentsForAllocation(@Param("loanId") Long loanId);
+    
+    interface OpenInstallment {
+        Long getInstallmentId();
+        
+        Integer getInstallmentNumber();
+        
+        BigDecimal getTotalDueAmount();
+        
+        BigDecimal getPaidAmount();
+    }
+    
+    // Carga do índice de vencimentos: só o necessário das parcelas em aberto
+    @Query("SELECT i.id AS installmentId, i.loan.id AS loanId, i.dueDate AS dueDate " +
+           "FROM LoanInstallment i WHERE i.isPaid = false")
+    List<DueEntry> findUnpaidDueEntries();
+    
+    interface DueEntry {
+        Long getInstallmentId();
+        
+        Long getLoanId();
+        
+        LocalDate getDueDate();
+    }
+    
+    // Projeção com o necessário para registrar o pagamento sem carregar as entidades
+    interface PaymentTarget {
+        Long getInstallmentId();
+        
+        Long getLoanId();
+        
+        Long getUserId();
+        
+        Boolean getPaid();
+    }
 }
@@ -2,10 +2,19 @@ package com.finman.repository;
 
 import com.finman.model.Loan;
 import com.finman.model.enums.LoanStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface LoanRepository extends JpaRepository<Loan, Long> {
@@ -17,4 +26,45 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
     List<Loan> findByUser_IdAndStatus(Long userId, LoanStatus status);
     
     List<Loan> findByOutstandingBalanceGreaterThan(java.math.BigDecimal amount);
+    
+    // Quantidade, valor total e saldo devedor por status, para o dashboard
+    @Query("SELECT l.status AS status, COUNT(l) AS loanCount, COALESCE(SUM(l.loanAmount), 0) AS totalAmount, " +
+           "COALESCE(SUM(l.outstandingBalance), 0) AS totalOutstanding " +
+           "FROM Loan l GROUP BY l.status")
+    List<StatusTotals> sumByStatus();
+    
+    interface StatusTotals {
+        LoanStatus getStatus();
+        
+        Long getLoanCount();
+        
+        BigDecimal getTotalAmount();
+        
+        BigDecimal getTotalOutstanding();
+    }
+    
+    // Serializa operações concorrentes sobre o mesmo empréstimo (ex.: rateio de pagamento)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM Loan l WHERE l.id = :id")
+    Optional<Loan> findByIdForUpdate(@Param("id") Long id);
+    
+    // Vários empréstimos de uma vez, sempre em ordem de id, para que lotes concorrentes não se travem
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM Loan l WHERE l.id IN :ids ORDER BY l.id")
+    List<Loan> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+    
+    // Acumula o pagamento no empréstimo; o saldo devedor não fica negativo
+    @Modifying
+    @Query("UPDATE Loan l SET l.totalPaidAmount = l.totalPaidAmount + :amount, " +
+           "l.outstandingBalance = CASE WHEN l.outstandingBalance > :amount THEN l.outstandingBalance - :amount ELSE 0 END, " +
+           "l.updatedAt = :now " +
+           "WHERE l.id = :loanId")
+    int applyPayment(@Param("loanId") Long loanId, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+    
+    // Marca como PAID apenas se não restar nenhuma parcela em aberto
+    @Modifying
+    @Query("UPDATE Loan l SET l.status = com.finman.model.enums.LoanStatus.PAID, l.updatedAt = :now " +
+           "WHERE l.id = :loanId AND l.status = com.finman.model.enums.LoanStatus.ACTIVE " +
+           "AND NOT EXISTS (SELECT i.id FROM LoanInstallment i WHERE i.loan.id = :loanId AND i.isPaid = false)")
+    int markPaidIfSettled(@Param("loanId") Long loanId, @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,34 @@
+package com.finman.repository;
+
+import com.finman.model.PendingContent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+// Só comandos atômicos: cada um trava a linha do hash até o fim da transação
+@Repository
+public interface PendingContentRepository extends JpaRepository<PendingContent, String> {
+    
+    @Modifying
+    @Query("UPDATE PendingContent p SET p.pins = p.pins + 1, p.updatedAt = :now WHERE p.contentHash = :contentHash")
+    int pin(@Param("contentHash") String contentHash, @Param("now") LocalDateTime now);
+    
+    // Linha nova; hash repetido viola a chave primária
+    @Modifying
+    @Query(value = "INSERT INTO pending_contents (content_hash, pins, updated_at) VALUES (:contentHash, :pins, :now)",
+            nativeQuery = true)
+    int insert(@Param("contentHash") String contentHash, @Param("pins") int pins, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE PendingContent p SET p.pins = p.pins - 1 WHERE p.contentHash = :contentHash AND p.pins > 0")
+    int unpin(@Param("contentHash") String contentHash);
+    
+    // Sem pinos, ou com pinos de um nó que caiu antes de liberá-los
+    @Modifying
+    @Query("DELETE FROM PendingContent p WHERE p.contentHash = :contentHash AND (p.pins = 0 OR p.updatedAt < :staleBefore)")
+    int deleteUnpinned(@Param("contentHash") String contentHash, @Param("staleBefore") LocalDateTime staleBefore);
+}
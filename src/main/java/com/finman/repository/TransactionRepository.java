@@ -0,0 +1,16 @@
+package com.finman.repository;
+
+import com.finman.model.Transaction;
+import com.finman.model.enums.TransactionType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+    
+    List<Transaction> findByLoan_Id(Long loanId);
+    
+    List<Transaction> findByLoan_IdAndTransactionType(Long loanId, TransactionType transactionType);
+}
@@ -0,0 +1,351 @@
+package com.finman.service;
+
+import com.finman.model.Loan;
+import com.finman.model.enums.PaymentFrequency;
+import com.finman.model.enums.PaymentType;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+
+/**
+ * Calcula cronogramas de parcelas em aritmética de centavos (long).
+ *
+ * As regras de arredondamento são as mesmas dos geradores originais do LoanController:
+ * juros = saldo * taxa (HALF_UP, 2 casas), principal = divisão HALF_UP em 2 casas e
+ * a última parcela quita o saldo restante.
+ */
+@Service
+public class AmortizationEngine {
+
+    // Maior escala de taxa tratada no caminho rápido (10^18 ainda cabe em long)
+    private static final int MAX_FAST_RATE_SCALE = 18;
+
+    public AmortizationSchedule compute(Loan loan) {
+        return compute(loan.getLoanAmount(), loan.getInterestRate(), loan.getTermValue(),
+                loan.getPaymentFrequency(), loan.getPaymentType(),
+                loan.getAlternateDaysInterval(), loan.getStartDate());
+    }
+
+    public AmortizationSchedule compute(BigDecimal loanAmount, BigDecimal interestRate, int termValue,
+                                        PaymentFrequency frequency, PaymentType paymentType,
+                                        Integer alternateDaysInterval, LocalDate startDate) {
+        int n = Math.max(termValue, 0);
+        long[] dueEpochDays = new long[n];
+        long[] principalCents = new long[n];
+        long[] interestCents = new long[n];
+        long[] totalCents = new long[n];
+
+        fillDueDates(dueEpochDays, startDate, frequency, alternateDaysInterval);
+
+        long amountCents = toCents(loanAmount);
+        InterestRate rate = new InterestRate(interestRate);
+        PaymentType type = paymentType != null ? paymentType : PaymentType.FIXED_INSTALLMENTS;
+
+        // Parcelas fixas: o principal por parcela é calculado uma única vez
+        long fixedPrincipal = type == PaymentType.FIXED_INSTALLMENTS && n > 0 ? divideHalfUp(amountCents, n) : 0;
+
+        long remaining = amountCents;
+        for (int i = 0; i < n; i++) {
+            long interest = rate.interestOn(remaining);
+            long principal = principalFor(type, i, n, remaining, fixedPrincipal);
+
+            principalCents[i] = principal;
+            interestCents[i] = interest;
+            totalCents[i] = principal + interest;
+            remaining -= principal;
+        }
+
+        return new AmortizationSchedule(dueEpochDays, principalCents, interestCents, totalCents);
+    }
+
+    public AmortizationSummary summarize(Loan loan) {
+        return summarize(loan.getLoanAmount(), loan.getInterestRate(), loan.getTermValue(),
+                loan.getPaymentFrequency(), loan.getPaymentType(),
+                loan.getAlternateDaysInterval(), loan.getStartDate());
+    }
+
+    /**
+     * Apenas os totais do cronograma, sem alocar as linhas. Usado na grade de simulação,
+     * onde só o resumo de cada combinação de prazo e taxa é necessário.
+     */
+    public AmortizationSummary summarize(BigDecimal loanAmount, BigDecimal interestRate, int termValue,
+                                         PaymentType paymentType) {
+        return summarize(loanAmount, interestRate, termValue, null, paymentType, null, null);
+    }
+
+    /**
+     * Totais do cronograma sem gerar as parcelas. FIXED_INSTALLMENTS e INTEREST_ONLY usam
+     * forma fechada (o saldo é uma progressão aritmética); FLEXIBLE ainda percorre as linhas.
+     * O resultado é idêntico, centavo a centavo, à soma das parcelas de {@link #compute}.
+     */
+    public AmortizationSummary summarize(BigDecimal loanAmount, BigDecimal interestRate, int termValue,
+                                         PaymentFrequency frequency, PaymentType paymentType,
+                                         Integer alternateDaysInterval, LocalDate startDate) {
+        int n = Math.max(termValue, 0);
+        long amountCents = toCents(loanAmount);
+        InterestRate rate = new InterestRate(interestRate);
+        PaymentType type = paymentType != null ? paymentType : PaymentType.FIXED_INSTALLMENTS;
+        LocalDate lastDueDate = n > 0 && startDate != null && frequency != null
+                ? lastDueDate(startDate, frequency, alternateDaysInterval, n) : null;
+
+        if (n == 0) {
+            return new AmortizationSummary(0, 0, 0, 0, lastDueDate);
+        }
+
+        if (type == PaymentType.INTEREST_ONLY) {
+            // Saldo constante até a última parcela: todos os juros são iguais
+            long interest = rate.interestOn(amountCents);
+            long firstInstallment = interest + (n == 1 ? amountCents : 0);
+            return new AmortizationSummary(n, firstInstallment, amountCents, interest * n, lastDueDate);
+        }
+
+        if (type == PaymentType.FIXED_INSTALLMENTS) {
+            long fixedPrincipal = divideHalfUp(amountCents, n);
+            long lastRemaining = amountCents - (n - 1) * fixedPrincipal;
+            if (fixedPrincipal >= 0 && lastRemaining >= 0) {
+                try {
+                    // Saldo da parcela j (contando da última): lastRemaining + j * fixedPrincipal
+                    long totalInterest = rate.sumInterestOnProgression(lastRemaining, fixedPrincipal, n);
+                    long firstInstallment = (n == 1 ? amountCents : fixedPrincipal) + rate.interestOn(amountCents);
+                    return new AmortizationSummary(n, firstInstallment, amountCents, totalInterest, lastDueDate);
+                } catch (ArithmeticException e) {
+                    // Valores fora da faixa do long: segue pelo cálculo linha a linha
+                }
+            }
+        }
+
+        return summarizeByRows(amountCents, rate, n, type, lastDueDate);
+    }
+
+    /**
+     * Data da última parcela, igual à gerada por {@link #compute}, sem percorrer o cronograma.
+     */
+    public static LocalDate lastDueDate(LocalDate startDate, PaymentFrequency frequency,
+                                        Integer alternateDaysInterval, int termValue) {
+        long steps = termValue - 1;
+        switch (frequency) {
+            case DAILY:
+                return startDate.plusDays(steps);
+            case WEEKLY:
+                return startDate.plusWeeks(steps);
+            case ALTERNATE_DAYS:
+                return startDate.plusDays(steps * alternateDaysStep(alternateDaysInterval));
+            default:
+                return lastMonthlyDueDate(startDate, steps);
+        }
+    }
+
+    /**
+     * Intervalo de ALTERNATE_DAYS aceito pelo engine: sem intervalo vale 2 dias, como nos
+     * geradores antigos; zero ou negativo repetiria (ou voltaria) a data de vencimento.
+     */
+    public static boolean isValidAlternateDaysInterval(PaymentFrequency frequency, Integer alternateDaysInterval) {
+        return frequency != PaymentFrequency.ALTERNATE_DAYS || alternateDaysInterval == null || alternateDaysInterval > 0;
+    }
+
+    private static long alternateDaysStep(Integer alternateDaysInterval) {
+        if (alternateDaysInterval == null) {
+            return 2;
+        }
+        if (alternateDaysInterval <= 0) {
+            throw new IllegalArgumentException("Intervalo de dias deve ser positivo: " + alternateDaysInterval);
+        }
+        return alternateDaysInterval;
+    }
+
+    /**
+     * O cronograma mensal encadeia plusMonths(1), então o dia só diminui: ele fica no menor
+     * tamanho de mês encontrado no caminho. Em 48 meses sempre há um fevereiro de 28 dias.
+     */
+    private static LocalDate lastMonthlyDueDate(LocalDate startDate, long steps) {
+        LocalDate target = startDate.plusMonths(steps);
+        int day = startDate.getDayOfMonth();
+        if (day <= 28) {
+            return target;
+        }
+        if (steps >= 48) {
+            return target.withDayOfMonth(28);
+        }
+        for (long i = 1; i <= steps; i++) {
+            day = Math.min(day, startDate.plusMonths(i).lengthOfMonth());
+        }
+        return target.withDayOfMonth(day);
+    }
+
+    private static AmortizationSummary summarizeByRows(long amountCents, InterestRate rate, int n, PaymentType type,
+                                                       LocalDate lastDueDate) {
+        long fixedPrincipal = type == PaymentType.FIXED_INSTALLMENTS ? divideHalfUp(amountCents, n) : 0;
+
+        long firstInstallment = 0;
+        long totalInterest = 0;
+        long remaining = amountCents;
+        for (int i = 0; i < n; i++) {
+            long interest = rate.interestOn(remaining);
+            long principal = principalFor(type, i, n, remaining, fixedPrincipal);
+            if (i == 0) {
+                firstInstallment = principal + interest;
+            }
+            totalInterest += interest;
+            remaining -= principal;
+        }
+
+        return new AmortizationSummary(n, firstInstallment, amountCents, totalInterest, lastDueDate);
+    }
+
+    private static long principalFor(PaymentType type, int index, int n, long remaining, long fixedPrincipal) {
+        // A última parcela sempre quita o saldo restante
+        if (index == n - 1) {
+            return remaining;
+        }
+        switch (type) {
+            case INTEREST_ONLY:
+                return 0;
+            case FLEXIBLE:
+                return divideHalfUp(remaining, n - index);
+            case FIXED_INSTALLMENTS:
+            default:
+                return fixedPrincipal;
+        }
+    }
+
+    private static void fillDueDates(long[] dueEpochDays, LocalDate startDate, PaymentFrequency frequency,
+                                     Integer alternateDaysInterval) {
+        if (dueEpochDays.length == 0) {
+            return;
+        }
+        long stepDays = 0;
+        boolean monthly = false;
+        switch (frequency) {
+            case DAILY:
+                stepDays = 1;
+                break;
+            case WEEKLY:
+                stepDays = 7;
+                break;
+            case ALTERNATE_DAYS:
+                stepDays = alternateDaysStep(alternateDaysInterval);
+                break;
+            default:
+                monthly = true;
+                break;
+        }
+
+        if (monthly) {
+            // Mensal: plusMonths encadeado (31/01 -> 28/02 -> 28/03), não dá para usar passo fixo
+            LocalDate current = startDate;
+            for (int i = 0; i < dueEpochDays.length; i++) {
+                dueEpochDays[i] = current.toEpochDay();
+                current = current.plusMonths(1);
+            }
+            return;
+        }
+
+        long day = startDate.toEpochDay();
+        for (int i = 0; i < dueEpochDays.length; i++) {
+            dueEpochDays[i] = day;
+            day += stepDays;
+        }
+    }
+
+    static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Divisão inteira com arredondamento HALF_UP (empate se afasta do zero, como BigDecimal).
+     */
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+        if (remainder * 2 >= Math.abs(divisor)) {
+            quotient += Long.signum(dividend) * Long.signum(divisor);
+        }
+        return quotient;
+    }
+
+    /**
+     * Taxa de juros decomposta em valor inteiro e divisor para o cálculo em centavos.
+     * Quando o produto não cabe em long, cai para BigDecimal com o mesmo arredondamento.
+     */
+    private static final class InterestRate {
+
+        private final BigDecimal rate;
+        private final long unscaled;
+        private final long divisor;
+        private final boolean fast;
+
+        InterestRate(BigDecimal rate) {
+            BigDecimal normalized = rate.stripTrailingZeros();
+            if (normalized.scale() < 0) {
+                normalized = normalized.setScale(0);
+            }
+            this.rate = rate;
+            this.fast = normalized.scale() <= MAX_FAST_RATE_SCALE && normalized.unscaledValue().bitLength() < 63;
+            this.unscaled = fast ? normalized.unscaledValue().longValue() : 0;
+            this.divisor = fast ? pow10(normalized.scale()) : 1;
+        }
+
+        long interestOn(long balanceCents) {
+            if (fast) {
+                long high = Math.multiplyHigh(balanceCents, unscaled);
+                long product = balanceCents * unscaled;
+                if ((high == 0 && product >= 0) || (high == -1 && product < 0)) {
+                    return divideHalfUp(product, divisor);
+                }
+            }
+            return BigDecimal.valueOf(balanceCents, 2).multiply(rate)
+                    .setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+
+        /**
+         * Soma dos juros arredondados sobre os saldos base, base + step, ..., base + (n - 1) * step.
+         * HALF_UP em inteiros não negativos é floor((x + d / 2) / d), então a soma vira uma
+         * soma de pisos de função linear, resolvida em O(log) pelo algoritmo tipo Euclides.
+         * Lança ArithmeticException se algum valor intermediário não couber em long.
+         */
+        long sumInterestOnProgression(long base, long step, int n) {
+            if (!fast || unscaled < 0) {
+                throw new ArithmeticException("Taxa fora da faixa do cálculo em forma fechada");
+            }
+            long half = divisor / 2;
+            long a = Math.multiplyExact(step, unscaled);
+            long b = Math.addExact(Math.multiplyExact(base, unscaled), half);
+            return floorSum(n, divisor, a, b);
+        }
+
+        // Soma de floor((a * i + b) / m) para i em [0, n), com a, b >= 0 e m > 0
+        private static long floorSum(long n, long m, long a, long b) {
+            long result = 0;
+            while (true) {
+                if (a >= m) {
+                    long pairs = n % 2 == 0 ? Math.multiplyExact(n / 2, n - 1) : Math.multiplyExact(n, (n - 1) / 2);
+                    result = Math.addExact(result, Math.multiplyExact(pairs, a / m));
+                    a %= m;
+                }
+                if (b >= m) {
+                    result = Math.addExact(result, Math.multiplyExact(n, b / m));
+                    b %= m;
+                }
+                long yMax = Math.addExact(Math.multiplyExact(a, n), b);
+                if (yMax < m) {
+                    return result;
+                }
+                n = yMax / m;
+                b = yMax % m;
+                long previousM = m;
+                m = a;
+                a = previousM;
+            }
+        }
+
+        private static long pow10(int exponent) {
+            long result = 1;
+            for (int i = 0; i < exponent; i++) {
+                result *= 10;
+            }
+            return result;
+        }
+    }
+}
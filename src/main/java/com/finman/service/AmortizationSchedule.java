@@ -0,0 +1,107 @@
+package com.finman.service;
+
+import com.finman.model.Loan;
+import com.finman.model.LoanInstallment;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cronograma de parcelas calculado pelo {@link AmortizationEngine}.
+ * Os valores ficam em centavos (long) e as datas em epoch-day, em arrays primitivos;
+ * entidades só são criadas quando {@link #toInstallments(Loan)} é chamado.
+ */
+public final class AmortizationSchedule {
+
+    private final long[] dueEpochDays;
+    private final long[] principalCents;
+    private final long[] interestCents;
+    private final long[] totalCents;
+
+    AmortizationSchedule(long[] dueEpochDays, long[] principalCents, long[] interestCents, long[] totalCents) {
+        this.dueEpochDays = dueEpochDays;
+        this.principalCents = principalCents;
+        this.interestCents = interestCents;
+        this.totalCents = totalCents;
+    }
+
+    public int size() {
+        return dueEpochDays.length;
+    }
+
+    public long getDueEpochDay(int index) {
+        return dueEpochDays[index];
+    }
+
+    public LocalDate getDueDate(int index) {
+        return LocalDate.ofEpochDay(dueEpochDays[index]);
+    }
+
+    public long getPrincipalCents(int index) {
+        return principalCents[index];
+    }
+
+    public long getInterestCents(int index) {
+        return interestCents[index];
+    }
+
+    public long getTotalCents(int index) {
+        return totalCents[index];
+    }
+
+    public BigDecimal getPrincipalAmount(int index) {
+        return BigDecimal.valueOf(principalCents[index], 2);
+    }
+
+    public BigDecimal getInterestAmount(int index) {
+        return BigDecimal.valueOf(interestCents[index], 2);
+    }
+
+    public BigDecimal getTotalDueAmount(int index) {
+        return BigDecimal.valueOf(totalCents[index], 2);
+    }
+
+    // Totais do cronograma
+    public long getTotalPrincipalCents() {
+        return sum(principalCents);
+    }
+
+    public long getTotalInterestCents() {
+        return sum(interestCents);
+    }
+
+    public long getTotalDueCents() {
+        return sum(totalCents);
+    }
+
+    /**
+     * Materializa o cronograma como entidades {@link LoanInstallment} (não persistidas),
+     * no mesmo formato que o endpoint de simulação sempre retornou.
+     */
+    public List<LoanInstallment> toInstallments(Loan loan) {
+        List<LoanInstallment> installments = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            LoanInstallment installment = new LoanInstallment();
+            installment.setInstallmentNumber(i + 1);
+            installment.setDueDate(getDueDate(i));
+            installment.setPrincipalAmount(getPrincipalAmount(i));
+            installment.setInterestAmount(getInterestAmount(i));
+            installment.setTotalDueAmount(getTotalDueAmount(i));
+            installment.setPaidAmount(BigDecimal.ZERO);
+            installment.setIsPaid(false);
+            installment.setLoan(loan);
+            installments.add(installment);
+        }
+        return installments;
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+}
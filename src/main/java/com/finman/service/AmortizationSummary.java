@@ -0,0 +1,66 @@
+package com.finman.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Totais de um cronograma de parcelas, em centavos.
+ */
+public final class AmortizationSummary {
+
+    private final int installmentCount;
+    private final long firstInstallmentCents;
+    private final long totalPrincipalCents;
+    private final long totalInterestCents;
+    private final LocalDate lastDueDate;
+
+    AmortizationSummary(int installmentCount, long firstInstallmentCents, long totalPrincipalCents,
+                        long totalInterestCents, LocalDate lastDueDate) {
+        this.installmentCount = installmentCount;
+        this.firstInstallmentCents = firstInstallmentCents;
+        this.totalPrincipalCents = totalPrincipalCents;
+        this.totalInterestCents = totalInterestCents;
+        this.lastDueDate = lastDueDate;
+    }
+
+    public int getInstallmentCount() {
+        return installmentCount;
+    }
+
+    public long getFirstInstallmentCents() {
+        return firstInstallmentCents;
+    }
+
+    public long getTotalPrincipalCents() {
+        return totalPrincipalCents;
+    }
+
+    public long getTotalInterestCents() {
+        return totalInterestCents;
+    }
+
+    public long getTotalDueCents() {
+        return totalPrincipalCents + totalInterestCents;
+    }
+
+    // Nulo quando o resumo foi calculado sem data de início/frequência
+    public LocalDate getLastDueDate() {
+        return lastDueDate;
+    }
+
+    public BigDecimal getFirstInstallment() {
+        return BigDecimal.valueOf(firstInstallmentCents, 2);
+    }
+
+    public BigDecimal getTotalPrincipal() {
+        return BigDecimal.valueOf(totalPrincipalCents, 2);
+    }
+
+    public BigDecimal getTotalInterest() {
+        return BigDecimal.valueOf(totalInterestCents, 2);
+    }
+
+    public BigDecimal getTotalDue() {
+        return BigDecimal.valueOf(getTotalDueCents(), 2);
+    }
+}
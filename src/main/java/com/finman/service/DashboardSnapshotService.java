@@ -0,0 +1,80 @@
+package com.finman.service;
+
+import com.finman.model.DashboardSnapshot;
+import com.finman.model.enums.LoanStatus;
+import com.finman.repository.DashboardSnapshotRepository;
+import com.finman.repository.DocumentRepository;
+import com.finman.repository.LoanInstallmentRepository;
+import com.finman.repository.LoanRepository;
+import com.finman.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Grava uma linha por dia com as métricas do dashboard. O histórico é lido só dessa tabela,
+ * por faixa de datas na chave primária, sem recalcular nada sobre os dados de origem.
+ */
+@Service
+public class DashboardSnapshotService {
+
+    @Autowired
+    private DashboardSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private LoanInstallmentRepository loanInstallmentRepository;
+
+    // Perto do fim do dia, para a linha refletir o fechamento; rodar de novo sobrescreve o dia
+    @Scheduled(cron = "${app.dashboard.snapshot.cron:0 55 23 * * *}")
+    public void takeDailySnapshot() {
+        takeSnapshot(LocalDate.now());
+    }
+
+    /**
+     * Calcula as métricas com as consultas agregadas (fonte de verdade, não os contadores em
+     * memória) e grava ou substitui a linha da data.
+     */
+    @Transactional
+    public DashboardSnapshot takeSnapshot(LocalDate date) {
+        DashboardSnapshot snapshot = new DashboardSnapshot(date);
+        snapshot.setActiveLoans(0L);
+        snapshot.setTotalValue(BigDecimal.ZERO);
+        snapshot.setOutstandingBalance(BigDecimal.ZERO);
+        snapshot.setApprovedLoans(0L);
+        snapshot.setTotalApproved(BigDecimal.ZERO);
+        for (LoanRepository.StatusTotals totals : loanRepository.sumByStatus()) {
+            if (totals.getStatus() == LoanStatus.ACTIVE) {
+                snapshot.setActiveLoans(totals.getLoanCount());
+                snapshot.setTotalValue(totals.getTotalAmount());
+                snapshot.setOutstandingBalance(totals.getTotalOutstanding());
+            } else if (totals.getStatus() == LoanStatus.APPROVED) {
+                snapshot.setApprovedLoans(totals.getLoanCount());
+                snapshot.setTotalApproved(totals.getTotalAmount());
+            }
+        }
+        snapshot.setPaidInstallments(loanInstallmentRepository.countByIsPaidTrue());
+        snapshot.setOverdueInstallments(loanInstallmentRepository.countByDueDateBeforeAndIsPaidFalse(date));
+        snapshot.setTotalUsers(userRepository.count());
+        snapshot.setTotalDocuments(documentRepository.count());
+        return snapshotRepository.save(snapshot);
+    }
+
+    @Transactional(readOnly = true)
+    public List<DashboardSnapshot> getHistory(LocalDate from, LocalDate to) {
+        return snapshotRepository.findBySnapshotDateBetweenOrderBySnapshotDate(from, to);
+    }
+}
@@ -0,0 +1,174 @@
+package com.finman.service;
+
+import com.finman.model.enums.LoanStatus;
+import com.finman.repository.DocumentRepository;
+import com.finman.repository.LoanInstallmentRepository;
+import com.finman.repository.LoanRepository;
+import com.finman.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Estatísticas do dashboard. Em regime são lidas de {@link PortfolioCounters} e do
+ * {@link InstallmentDueIndex}, sem acesso ao banco; a versão com consultas agregadas
+ * (COUNT/SUM/GROUP BY) cobre a partida da aplicação e não carrega entidades.
+ */
+@Service
+public class DashboardStatsService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private LoanInstallmentRepository loanInstallmentRepository;
+
+    @Autowired
+    private InstallmentDueIndex installmentDueIndex;
+
+    @Autowired
+    private PortfolioCounters portfolioCounters;
+
+    @Value("${app.dashboard.metric-timeout-ms:2000}")
+    private long metricTimeoutMs;
+
+    // Pool limitado para as consultas do dashboard; a fila cheia recusa em vez de acumular
+    private final ThreadPoolExecutor dashboardQueryExecutor;
+
+    public DashboardStatsService(@Value("${app.dashboard.query-threads:8}") int queryThreads,
+                                 @Value("${app.dashboard.query-queue-size:64}") int queueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.dashboardQueryExecutor = new ThreadPoolExecutor(queryThreads, queryThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "dashboard-query-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.dashboardQueryExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dashboardQueryExecutor.shutdownNow();
+    }
+
+    /**
+     * Lidas dos contadores em memória; o banco só é consultado enquanto eles carregam.
+     */
+    public Map<String, Object> getStats() {
+        if (!portfolioCounters.isReady() || !installmentDueIndex.isReady()) {
+            return getStatsFromDatabase();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalUsers", portfolioCounters.getUsers());
+        stats.put("activeLoans", portfolioCounters.getLoanCount(LoanStatus.ACTIVE));
+        stats.put("totalValue", portfolioCounters.getLoanAmount(LoanStatus.ACTIVE));
+        stats.put("totalDocuments", portfolioCounters.getDocuments());
+        stats.put("paidInstallments", portfolioCounters.getPaidInstallments());
+        stats.put("overdueInstallments", installmentDueIndex.countOverdue(LocalDate.now()));
+        stats.put("approvedLoans", portfolioCounters.getLoanCount(LoanStatus.APPROVED));
+        stats.put("totalApproved", portfolioCounters.getLoanAmount(LoanStatus.APPROVED));
+        return stats;
+    }
+
+    /**
+     * Consultas agregadas disparadas em paralelo no pool do dashboard, cada uma com seu
+     * timeout: a latência fica na da consulta mais lenta, não na soma. Métricas que não
+     * responderem a tempo ficam de fora e a resposta sai com "partial" e "unavailable".
+     */
+    public Map<String, Object> getStatsFromDatabase() {
+        LocalDate today = LocalDate.now();
+        CompletableFuture<Map<LoanStatus, LoanRepository.StatusTotals>> loansByStatus = query(() -> {
+            Map<LoanStatus, LoanRepository.StatusTotals> byStatus = new EnumMap<>(LoanStatus.class);
+            for (LoanRepository.StatusTotals totals : loanRepository.sumByStatus()) {
+                byStatus.put(totals.getStatus(), totals);
+            }
+            return byStatus;
+        });
+        CompletableFuture<Long> users = query(userRepository::count);
+        CompletableFuture<Long> documents = query(documentRepository::count);
+        CompletableFuture<Long> paid = query(loanInstallmentRepository::countByIsPaidTrue);
+        CompletableFuture<Long> overdue = query(() -> loanInstallmentRepository.countByDueDateBeforeAndIsPaidFalse(today));
+
+        Map<String, Object> stats = new HashMap<>();
+        List<String> unavailable = new ArrayList<>();
+        Map<LoanStatus, LoanRepository.StatusTotals> byStatus = result(loansByStatus);
+        if (byStatus != null) {
+            stats.put("activeLoans", loanCount(byStatus.get(LoanStatus.ACTIVE)));
+            stats.put("totalValue", loanTotal(byStatus.get(LoanStatus.ACTIVE)));
+            stats.put("approvedLoans", loanCount(byStatus.get(LoanStatus.APPROVED)));
+            stats.put("totalApproved", loanTotal(byStatus.get(LoanStatus.APPROVED)));
+        } else {
+            unavailable.addAll(List.of("activeLoans", "totalValue", "approvedLoans", "totalApproved"));
+        }
+        putResult(stats, unavailable, "totalUsers", users);
+        putResult(stats, unavailable, "totalDocuments", documents);
+        putResult(stats, unavailable, "paidInstallments", paid);
+        putResult(stats, unavailable, "overdueInstallments", overdue);
+        if (!unavailable.isEmpty()) {
+            stats.put("partial", true);
+            stats.put("unavailable", unavailable);
+        }
+        return stats;
+    }
+
+    private <T> CompletableFuture<T> query(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, dashboardQueryExecutor)
+                    .orTimeout(metricTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Pool e fila cheios: a métrica sai como indisponível em vez de sobrecarregar o banco
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> T result(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    private static void putResult(Map<String, Object> stats, List<String> unavailable, String metric,
+                                  CompletableFuture<?> future) {
+        Object value = result(future);
+        if (value != null) {
+            stats.put(metric, value);
+        } else {
+            unavailable.add(metric);
+        }
+    }
+
+    private static long loanCount(LoanRepository.StatusTotals totals) {
+        return totals != null ? totals.getLoanCount() : 0L;
+    }
+
+    private static BigDecimal loanTotal(LoanRepository.StatusTotals totals) {
+        return totals != null ? totals.getTotalAmount() : BigDecimal.ZERO;
+    }
+}
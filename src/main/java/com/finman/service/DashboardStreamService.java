@@ -0,0 +1,328 @@
+package com.finman.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stream SSE das estatísticas do dashboard.
+ *
+ * Cada conexão recebe um "snapshot" completo ao conectar e depois eventos "delta" só com os
+ * campos alterados; campos que deixaram de vir (ex.: "partial" e "unavailable" quando as
+ * métricas voltam) saem listados em "removed". As conexões ficam no modo assíncrono do
+ * servlet (nenhuma thread presa por cliente); uma única thread verifica, a cada intervalo,
+ * se contadores ou índice de vencimentos mudaram e, nesse caso, calcula as estatísticas uma
+ * vez. Várias alterações dentro do mesmo intervalo saem num único frame.
+ *
+ * A escrita, que bloqueia enquanto o cliente não lê, não acontece na thread do intervalo:
+ * cada cliente tem uma caixa com só as estatísticas mais recentes, esvaziada por um pool
+ * limitado de threads de envio, uma por cliente de cada vez. Um cliente lento perde os
+ * estados intermediários e recebe a diferença para o último que viu; o que fica preso num
+ * envio por mais de app.dashboard.stream.send-timeout-ms é desconectado.
+ *
+ * Só a thread de envio que está com o cliente toca no emitter, inclusive para encerrá-lo:
+ * send e complete sincronizam no próprio emitter, e um envio preso seguraria quem tentasse
+ * encerrar. A thread do intervalo e o desligamento apenas marcam o cliente; o encerramento
+ * acontece no próximo esvaziamento da caixa ou quando o envio preso retornar.
+ */
+@Service
+public class DashboardStreamService {
+
+    @Autowired
+    private DashboardStatsService dashboardStatsService;
+
+    @Autowired
+    private PortfolioCounters portfolioCounters;
+
+    @Autowired
+    private InstallmentDueIndex installmentDueIndex;
+
+    @Value("${app.dashboard.stream.interval-ms:1000}")
+    private long intervalMs;
+
+    @Value("${app.dashboard.stream.heartbeat-ms:30000}")
+    private long heartbeatMs;
+
+    @Value("${app.dashboard.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.dashboard.stream.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dashboard-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ThreadPoolExecutor sendExecutor;
+
+    // Estado visto no último tick: só a thread do scheduler acessa
+    private long countersVersion = -1;
+    private long indexVersion = -1;
+    private LocalDate statsDate;
+    private long lastHeartbeat;
+
+    public DashboardStreamService(@Value("${app.dashboard.stream.send-threads:4}") int sendThreads,
+                                  @Value("${app.dashboard.stream.send-queue-size:1000}") int sendQueueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sendExecutor = new ThreadPoolExecutor(sendThreads, sendThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(sendQueueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "dashboard-stream-send-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.sendExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::tick, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Os encerramentos já enfileirados ainda rodam; o pool não aceita tarefas novas
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+        clients.forEach(client -> close(client, null));
+        sendExecutor.shutdown();
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(timeoutMs));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter) {
+        Client client = new Client(emitter);
+        client.emitter.onCompletion(() -> clients.remove(client));
+        client.emitter.onTimeout(() -> clients.remove(client));
+        client.emitter.onError(error -> clients.remove(client));
+
+        // O snapshot é o primeiro envio do cliente; deltas que chegarem antes esperam na caixa dele
+        client.sending.set(true);
+        clients.add(client);
+        try {
+            sendExecutor.execute(() -> {
+                try {
+                    Map<String, Object> snapshot = dashboardStatsService.getStats();
+                    if (send(client, SseEmitter.event().name("snapshot").data(snapshot))) {
+                        client.lastSent = snapshot;
+                    }
+                } catch (RuntimeException e) {
+                    close(client, e);
+                }
+                drain(client);
+            });
+        } catch (RejectedExecutionException e) {
+            // O encerramento fica para um intervalo em que o pool aceite a tarefa
+            client.sending.set(false);
+            close(client, e);
+        }
+        return client.emitter;
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            closeStalled(now);
+            if (!clients.isEmpty() && hasChanges()) {
+                Map<String, Object> stats = dashboardStatsService.getStats();
+                for (Client client : clients) {
+                    // Estado ainda não enviado é substituído: o cliente só precisa do mais recente
+                    client.pendingStats.set(stats);
+                    schedule(client);
+                }
+                lastHeartbeat = now;
+            } else if (now - lastHeartbeat >= heartbeatMs) {
+                // Comentário SSE: mantém proxies abertos e detecta clientes desconectados
+                for (Client client : clients) {
+                    client.pendingHeartbeat = true;
+                    schedule(client);
+                }
+                lastHeartbeat = now;
+            } else {
+                // Encerramentos recusados pelo pool cheio são tentados de novo
+                for (Client client : clients) {
+                    if (client.closing) {
+                        schedule(client);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Mantém o agendamento vivo; o próximo tick tenta de novo
+        }
+    }
+
+    private boolean hasChanges() {
+        long currentCounters = portfolioCounters.getVersion();
+        long currentIndex = installmentDueIndex.getVersion();
+        LocalDate today = LocalDate.now();
+        // A virada do dia muda as vencidas mesmo sem alterações
+        boolean changed = currentCounters != countersVersion || currentIndex != indexVersion || !today.equals(statsDate);
+        countersVersion = currentCounters;
+        indexVersion = currentIndex;
+        statsDate = today;
+        return changed;
+    }
+
+    // Entrega a caixa do cliente ao pool, se nenhuma thread de envio já estiver com ele
+    private void schedule(Client client) {
+        if (!client.sending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sendExecutor.execute(() -> drain(client));
+        } catch (RejectedExecutionException e) {
+            // Pool cheio: a caixa fica para o próximo intervalo
+            client.sending.set(false);
+        }
+    }
+
+    /**
+     * Só uma thread por cliente esvazia a caixa, então lastSent, a ordem dos eventos e o
+     * encerramento ficam consistentes. Um envio que falha marca o cliente para encerrar, e a
+     * volta seguinte do laço encerra o emitter.
+     */
+    private void drain(Client client) {
+        while (true) {
+            if (client.closing) {
+                finish(client);
+                return;
+            }
+            Map<String, Object> stats = client.pendingStats.getAndSet(null);
+            boolean heartbeat = client.pendingHeartbeat;
+            client.pendingHeartbeat = false;
+            if (stats != null) {
+                sendDelta(client, stats);
+            } else if (heartbeat) {
+                send(client, SseEmitter.event().comment("heartbeat"));
+            } else {
+                client.sending.set(false);
+                // O tick pode ter deixado algo na caixa (ou pedido o encerramento) entre a última
+                // leitura e a liberação
+                if ((client.pendingStats.get() == null && !client.pendingHeartbeat && !client.closing)
+                        || !client.sending.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void sendDelta(Client client, Map<String, Object> stats) {
+        Map<String, Object> delta = new HashMap<>();
+        for (Map.Entry<String, Object> entry : stats.entrySet()) {
+            if (!Objects.equals(entry.getValue(), client.lastSent.get(entry.getKey()))) {
+                delta.put(entry.getKey(), entry.getValue());
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String key : client.lastSent.keySet()) {
+            if (!stats.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        if (!removed.isEmpty()) {
+            delta.put("removed", removed);
+        }
+        if (!delta.isEmpty() && send(client, SseEmitter.event().name("delta").data(delta))) {
+            client.lastSent = stats;
+        }
+    }
+
+    private boolean send(Client client, SseEmitter.SseEventBuilder event) {
+        client.sendStartedAt = System.currentTimeMillis();
+        try {
+            client.emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            close(client, e);
+            return false;
+        } finally {
+            client.sendStartedAt = 0;
+        }
+    }
+
+    // Cliente que não lê: o envio preso segura uma thread do pool e o encerra quando retornar
+    private void closeStalled(long now) {
+        for (Client client : clients) {
+            long startedAt = client.sendStartedAt;
+            if (startedAt != 0 && now - startedAt > sendTimeoutMs) {
+                close(client, new IOException("Cliente do dashboard parou de ler"));
+            }
+        }
+    }
+
+    /**
+     * Marca o cliente para encerrar (com erro, ou normalmente se {@code error} for null) e
+     * entrega o encerramento à thread de envio dele. Nunca toca no emitter: pode ser chamado
+     * da thread do intervalo com um envio preso segurando o emitter.
+     */
+    private void close(Client client, Throwable error) {
+        synchronized (client) {
+            if (client.closing) {
+                return;
+            }
+            client.closeError = error;
+            client.closing = true;
+        }
+        schedule(client);
+    }
+
+    // Só a thread que está com o cliente (sending) chama
+    private void finish(Client client) {
+        clients.remove(client);
+        try {
+            if (client.closeError != null) {
+                client.emitter.completeWithError(client.closeError);
+            } else {
+                client.emitter.complete();
+            }
+        } catch (RuntimeException e) {
+            // Conexão já encerrada pelo container
+        }
+    }
+
+    private static final class Client {
+        private final SseEmitter emitter;
+        private final AtomicReference<Map<String, Object>> pendingStats = new AtomicReference<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean pendingHeartbeat;
+        private volatile long sendStartedAt;
+        private volatile boolean closing;
+        private volatile Throwable closeError;
+        // Só a thread que está com o cliente (sending) acessa
+        private Map<String, Object> lastSent;
+
+        Client(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.finman.service;
+
+import com.finman.model.Document;
+import com.finman.repository.DocumentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Dossiê com todos os documentos de um usuário em ZIP, gerado em streaming direto para a saída.
+ *
+ * Cada arquivo é lido do armazenamento e copiado por um buffer fixo, então a memória usada
+ * não depende do tamanho do dossiê. Imagens e PDFs, que já vêm comprimidos, entram sem
+ * compressão (STORED); como o ZIP exige o CRC antes do conteúdo nesse modo, o arquivo é lido
+ * duas vezes, o que custa bem menos CPU que recomprimi-lo. Os demais tipos entram com DEFLATE.
+ */
+@Service
+public class DocumentArchiveService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    // A saída não é fechada, só o ZIP é finalizado
+    public void writeUserArchive(Long userId, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        writeDocuments(userId, zip);
+        zip.finish();
+    }
+
+    /**
+     * Um ZIP por usuário (usuario-{id}.zip) dentro de um ZIP externo, todos em streaming. As
+     * entradas externas usam DEFLATE sem compressão: o conteúdo já foi tratado no ZIP interno
+     * e, sem o CRC de antemão, não podem ser STORED.
+     */
+    public void writeBatchArchive(Collection<Long> userIds, OutputStream out) throws IOException {
+        ZipOutputStream outer = new ZipOutputStream(out);
+        outer.setLevel(Deflater.NO_COMPRESSION);
+        for (Long userId : new LinkedHashSet<>(userIds)) {
+            outer.putNextEntry(new ZipEntry("usuario-" + userId + ".zip"));
+            ZipOutputStream inner = new ZipOutputStream(outer);
+            writeDocuments(userId, inner);
+            inner.finish();
+            outer.closeEntry();
+        }
+        outer.finish();
+    }
+
+    private void writeDocuments(Long userId, ZipOutputStream zip) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        Set<String> names = new HashSet<>();
+        for (Document document : documentRepository.findByUser_Id(userId)) {
+            StoredContent content = fileStorageService.open(document.getFileName());
+            if (content == null) {
+                // Arquivo ausente no armazenamento: o documento fica fora do dossiê
+                continue;
+            }
+
+            ZipEntry entry = new ZipEntry(entryName(document, names));
+            if (document.getCreatedAt() != null) {
+                entry.setTimeLocal(document.getCreatedAt());
+            }
+            if (isPrecompressed(document.getContentType())) {
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(content.getLength());
+                entry.setCompressedSize(content.getLength());
+                entry.setCrc(crc32(content, buffer));
+            }
+
+            zip.putNextEntry(entry);
+            try (InputStream in = content.open(0)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    zip.write(buffer, 0, read);
+                }
+            }
+            zip.closeEntry();
+        }
+    }
+
+    private static long crc32(StoredContent content, byte[] buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = content.open(0)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static boolean isPrecompressed(String contentType) {
+        return contentType != null
+                && (contentType.startsWith("image/") || contentType.equals("application/pdf"));
+    }
+
+    // TIPO/nome_original, com sufixo " (2)", " (3)"... para nomes repetidos
+    private static String entryName(Document document, Set<String> names) {
+        String fileName = document.getOriginalFileName() != null ? document.getOriginalFileName() : document.getFileName();
+        fileName = fileName.replace('\\', '/');
+        fileName = fileName.substring(fileName.lastIndexOf('/') + 1);
+        if (fileName.isBlank()) {
+            fileName = "documento-" + document.getId();
+        }
+        String folder = document.getDocumentType() != null ? document.getDocumentType().name() + "/" : "";
+
+        String name = folder + fileName;
+        int dot = fileName.lastIndexOf('.');
+        String base = dot > 0 ? fileName.substring(0, dot) : fileName;
+        String extension = dot > 0 ? fileName.substring(dot) : "";
+        for (int copy = 2; !names.add(name); copy++) {
+            name = folder + base + " (" + copy + ")" + extension;
+        }
+        return name;
+    }
+}
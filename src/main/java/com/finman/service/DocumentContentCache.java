@@ -0,0 +1,253 @@
+package com.finman.service;
+
+import com.finman.model.Document;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conteúdo original dos documentos mais vistos em memória fora do heap (buffers diretos),
+ * para que a fila de verificação, onde os revisores abrem os mesmos uploads recentes várias
+ * vezes, seja servida da RAM sem pesar no GC.
+ *
+ * Só passa pelo cache o conteúdo que não pode ir por sendfile: arquivos comprimidos, que
+ * seriam descomprimidos a cada visualização, e arquivos de backends remotos. Arquivos locais
+ * puros já são servidos do page cache do sistema operacional. Entram apenas documentos ainda
+ * não verificados e até o tamanho máximo por entrada; o total é limitado pela soma dos
+ * tamanhos, saindo primeiro os menos usados. Como o conteúdo de um hash nunca muda, a única
+ * invalidação é a exclusão do documento.
+ *
+ * Numa falta o conteúdo sai direto do armazenamento, como sem cache: um Range (visualizador
+ * de PDF buscando páginas) lê só o trecho pedido. O carregamento para o cache acontece em
+ * segundo plano, num pool pequeno, um por hash de cada vez; com a fila cheia a entrada
+ * simplesmente não é carregada e a próxima falta tenta de novo.
+ */
+@Service
+public class DocumentContentCache {
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.document.cache.enabled:true}")
+    private boolean enabled;
+
+    // Memória direta usada: também limitada por -XX:MaxDirectMemorySize
+    @Value("${app.document.cache.max-size:64MB}")
+    private DataSize maxSize;
+
+    @Value("${app.document.cache.max-entry-size:8MB}")
+    private DataSize maxEntrySize;
+
+    private final Map<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Carregamentos em andamento, com um token próprio: a exclusão do documento remove o hash
+    // e o carregamento descarta o resultado. Acessado sob o lock de entries
+    private final Map<String, Object> loading = new HashMap<>();
+
+    private final ThreadPoolExecutor loadExecutor;
+
+    private long cachedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DocumentContentCache(@Value("${app.document.cache.load-threads:2}") int loadThreads,
+                                @Value("${app.document.cache.load-queue-size:64}") int queueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.loadExecutor = new ThreadPoolExecutor(loadThreads, loadThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "document-cache-load-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.loadExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        loadExecutor.shutdownNow();
+    }
+
+    /**
+     * Conteúdo do documento, do cache quando possível.
+     *
+     * @return null se o arquivo não existe
+     */
+    public StoredContent open(Document document) throws IOException {
+        String key = document.getContentHash();
+        if (!enabled || key == null) {
+            return fileStorageService.open(document.getFileName());
+        }
+
+        ByteBuffer cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return content(cached);
+        }
+
+        StoredContent content = fileStorageService.open(document.getFileName());
+        if (content == null || content.getPlainFile() != null) {
+            return content;
+        }
+        misses.incrementAndGet();
+        if (Boolean.TRUE.equals(document.getIsVerified()) || content.getLength() > maxEntrySize.toBytes()
+                || content.getLength() > maxSize.toBytes()) {
+            return content;
+        }
+
+        loadInBackground(key, content);
+        return content;
+    }
+
+    private void loadInBackground(String key, StoredContent content) {
+        Object token = new Object();
+        synchronized (entries) {
+            if (loading.putIfAbsent(key, token) != null) {
+                return;
+            }
+        }
+        try {
+            loadExecutor.execute(() -> {
+                ByteBuffer buffer = null;
+                try {
+                    buffer = load(content);
+                } catch (IOException | RuntimeException e) {
+                    // Fica fora do cache; a próxima falta tenta de novo
+                }
+                synchronized (entries) {
+                    // Documento excluído durante o carregamento: o hash saiu de loading
+                    if (loading.remove(key, token) && buffer != null) {
+                        ByteBuffer previous = entries.put(key, buffer);
+                        if (previous != null) {
+                            cachedBytes -= previous.capacity();
+                        }
+                        cachedBytes += buffer.capacity();
+                        evict();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (entries) {
+                loading.remove(key, token);
+            }
+        }
+    }
+
+    // Documento excluído: o conteúdo sai do cache (se outro documento o usa, volta no próximo acesso)
+    public void documentDeleted(Document document) {
+        if (document.getContentHash() == null) {
+            return;
+        }
+        synchronized (entries) {
+            loading.remove(document.getContentHash());
+            ByteBuffer removed = entries.remove(document.getContentHash());
+            if (removed != null) {
+                cachedBytes -= removed.capacity();
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+            stats.put("cachedBytes", cachedBytes);
+            stats.put("loading", loading.size());
+        }
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        stats.put("enabled", enabled);
+        stats.put("maxBytes", maxSize.toBytes());
+        stats.put("maxEntryBytes", maxEntrySize.toBytes());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.get());
+        stats.put("hitRate", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0.0);
+        return stats;
+    }
+
+    // Menos usados primeiro, até caber no limite
+    private void evict() {
+        Iterator<ByteBuffer> iterator = entries.values().iterator();
+        while (cachedBytes > maxSize.toBytes() && iterator.hasNext()) {
+            cachedBytes -= iterator.next().capacity();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static ByteBuffer load(StoredContent content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) content.getLength());
+        byte[] chunk = new byte[64 * 1024];
+        try (InputStream in = content.open(0)) {
+            int read;
+            while (buffer.hasRemaining() && (read = in.read(chunk, 0, Math.min(chunk.length, buffer.remaining()))) != -1) {
+                buffer.put(chunk, 0, read);
+            }
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("Conteúdo menor que o tamanho gravado");
+        }
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+    // Cada leitura usa uma visão própria do buffer, então leituras simultâneas não interferem
+    private static StoredContent content(ByteBuffer buffer) {
+        return new StoredContent(buffer.capacity(), null, offset -> {
+            ByteBuffer view = buffer.duplicate();
+            view.position((int) Math.min(offset, view.limit()));
+            return new ByteBufferInputStream(view);
+        });
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.finman.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Envia arquivos de documentos sem carregá-los no heap.
+ *
+ * Com o Tomcat, o corpo sai por sendfile (o conector usa FileChannel.transferTo direto para
+ * o socket, sem passar pela JVM); em outros containers, por transferTo para o stream da
+ * resposta. Suporta um intervalo "Range: bytes=..." com 206 Partial Content, para que
+ * visualizadores de PDF busquem as páginas aos poucos.
+ *
+ * Arquivos gravados comprimidos ({@link StoredFileCodec}) ou guardados fora do disco local
+ * (S3) não podem ir por sendfile: são lidos em streaming a partir do início do intervalo,
+ * com o tamanho original no Content-Length.
+ */
+@Service
+public class DocumentDownloadService {
+
+    // Atributos de sendfile do Tomcat (org.apache.tomcat.util.net.Constants)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Arquivo local puro (miniaturas)
+    public void serve(Path file, String contentType, String fileName, boolean attachment,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serve(Files.isRegularFile(file) ? StoredContent.ofPlainFile(file) : null,
+                contentType, fileName, attachment, request, response);
+    }
+
+    /**
+     * @param content conteúdo do armazenamento; null responde 404
+     * @param attachment true para "Content-Disposition: attachment" (download), false para exibir inline
+     */
+    public void serve(StoredContent content, String contentType, String fileName, boolean attachment,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (content == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = content.getLength();
+        long start = 0;
+        long end = length - 1;
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        // If-Range com outra versão (ETag ou data diferente da resposta): responde o arquivo inteiro
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(response.getHeader(HttpHeaders.ETAG))
+                && !ifRange.equals(response.getHeader(HttpHeaders.LAST_MODIFIED))) {
+            rangeHeader = null;
+        }
+        if (rangeHeader != null && length > 0) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // Vários intervalos (multipart/byteranges) não são usados pelos visualizadores: responde inteiro
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                long requestedStart = range.getRangeStart(length);
+                if (requestedStart >= length) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                start = requestedStart;
+                end = range.getRangeEnd(length);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(contentType != null ? contentType : "application/octet-stream");
+        response.setContentLengthLong(count);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (fileName != null) {
+            ContentDisposition.Builder builder = attachment ? ContentDisposition.attachment() : ContentDisposition.inline();
+            // filename* (RFC 5987) só quando o nome tem caracteres fora do ASCII
+            ContentDisposition disposition = StandardCharsets.US_ASCII.newEncoder().canEncode(fileName)
+                    ? builder.filename(fileName).build()
+                    : builder.filename(fileName, StandardCharsets.UTF_8).build();
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition.toString());
+        }
+
+        if (count == 0 || "HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        Path file = content.getPlainFile();
+        if (file == null) {
+            try (InputStream in = content.open(start)) {
+                OutputStream out = response.getOutputStream();
+                copy(in, out, count);
+                out.flush();
+            }
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+            out.flush();
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out, long count) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long remaining = count;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                break;
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.finman.service;
+
+import com.finman.model.Document;
+import com.finman.repository.DocumentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Migra os arquivos gravados no formato antigo (UUID_nome) para o armazenamento por hash.
+ *
+ * Roda em segundo plano quando a aplicação sobe, em lotes por id: calcula o hash de cada
+ * arquivo, junta-o ao arquivo de mesmo conteúdo (ou o cria), atualiza o documento e só
+ * então remove o arquivo antigo. O documento é atualizado por um UPDATE só dos campos do
+ * arquivo, e não salvando a entidade lida no início do lote, para não desfazer uma
+ * verificação ou edição feita nesse meio tempo. Documentos cujo arquivo não existe mais ficam como estão.
+ */
+@Service
+public class DocumentStorageMigration {
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.file.migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.file.migration.batch-size:100}")
+    private int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            Thread thread = new Thread(this::migrate, "document-storage-migration");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * @return quantidade de documentos migrados
+     */
+    public int migrate() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int migrated = 0;
+            long lastId = 0;
+            List<Document> batch;
+            do {
+                batch = documentRepository.findByContentHashIsNullAndIdGreaterThanOrderById(lastId, PageRequest.of(0, batchSize));
+                for (Document document : batch) {
+                    lastId = document.getId();
+                    if (migrateDocument(document)) {
+                        migrated++;
+                    }
+                }
+            } while (batch.size() == batchSize);
+            return migrated;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private boolean migrateDocument(Document document) {
+        String legacyName = document.getFileName();
+        if (legacyName == null) {
+            return false;
+        }
+
+        FileStorageService.StoredFile stored;
+        try {
+            if (!fileStorageService.fileExists(legacyName)) {
+                return false;
+            }
+            stored = fileStorageService.adoptLegacyFile(legacyName, document.getContentType());
+        } catch (IOException e) {
+            // Arquivo ilegível agora; a próxima execução tenta de novo
+            return false;
+        }
+
+        int updated;
+        try {
+            updated = documentRepository.adoptStoredFile(document.getId(), stored.fileName(), stored.contentHash(),
+                    stored.size(), LocalDateTime.now());
+        } catch (RuntimeException e) {
+            updated = 0;
+        }
+        if (updated == 0) {
+            // Documento excluído ou já migrado durante a migração: o arquivo novo sai se ninguém o usa
+            fileStorageService.releasePending(stored.contentHash());
+            try {
+                fileStorageService.deleteIfUnreferenced(stored.contentHash());
+            } catch (IOException ignored) {
+                // Fica órfão no disco
+            }
+            return false;
+        }
+        fileStorageService.releasePending(stored.contentHash());
+
+        try {
+            fileStorageService.deleteFile(legacyName);
+        } catch (IOException e) {
+            // O documento já aponta para o arquivo novo; o antigo fica órfão no disco
+        }
+        return true;
+    }
+}
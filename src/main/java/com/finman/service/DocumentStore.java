@@ -0,0 +1,82 @@
+package com.finman.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Backend onde ficam os arquivos dos documentos, endereçados pela chave (o SHA-256 do
+ * conteúdo). Os bytes gravados já estão no formato do {@link StoredFileCodec}; hash,
+ * deduplicação, contagem de referências e compressão ficam no {@link FileStorageService}.
+ *
+ * O backend é escolhido por "app.document.store.type": filesystem (padrão), s3 ou memory.
+ */
+public interface DocumentStore {
+
+    /**
+     * Grava o arquivo local "source" sob a chave. O backend pode mover o arquivo em vez de
+     * copiá-lo; o chamador remove o que sobrar. Gravar uma chave que já existe não muda nada,
+     * já que o conteúdo é o mesmo.
+     */
+    void put(String key, Path source) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    /**
+     * @return tamanho gravado em bytes, ou -1 se a chave não existe
+     */
+    long size(String key) throws IOException;
+
+    /**
+     * Bytes gravados a partir de "offset" (até "length" bytes, ou até o fim se negativo),
+     * lidos sob demanda; o chamador fecha o stream.
+     *
+     * @throws java.nio.file.NoSuchFileException se a chave não existe
+     */
+    InputStream open(String key, long offset, long length) throws IOException;
+
+    // Remover uma chave que não existe não é erro
+    void delete(String key) throws IOException;
+
+    /**
+     * Percorre as chaves gravadas, com o tamanho gravado e a camada de cada uma.
+     */
+    void forEach(Visitor visitor) throws IOException;
+
+    /**
+     * Arquivo local com os bytes gravados, para envio por sendfile. Null quando o backend
+     * não guarda os arquivos no disco local.
+     */
+    default Path localPath(String key) {
+        return null;
+    }
+
+    /**
+     * Leva a chave para a camada fria do backend, se ele tiver uma.
+     *
+     * @return true se foi movida
+     */
+    default boolean moveToColdTier(String key, String contentType) throws IOException {
+        return false;
+    }
+
+    default boolean isCold(String key) {
+        return false;
+    }
+
+    /**
+     * Backend sem capacidade no momento (limite de requisições em andamento atingido).
+     */
+    class BusyException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        void visit(String key, long storedSize, boolean cold) throws IOException;
+    }
+}
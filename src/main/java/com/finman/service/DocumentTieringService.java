@@ -0,0 +1,215 @@
+package com.finman.service;
+
+import com.finman.repository.DocumentRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Camada fria do armazenamento de documentos e relatório de espaço economizado.
+ *
+ * Um job diário move para a camada fria os arquivos cujos documentos foram todos
+ * verificados há mais de N dias (no disco local, um diretório separado com o conteúdo
+ * recomprimido no nível mais alto; no S3 a camada fria fica a cargo das regras de ciclo de
+ * vida do bucket). O relatório soma, por camada, o tamanho original e o gravado de cada
+ * arquivo, e compara com o tamanho dos documentos para mostrar quanto a deduplicação e a
+ * compressão economizam.
+ *
+ * A varredura lê o cabeçalho de cada arquivo (no S3, uma listagem e um GET parcial por
+ * objeto), então nunca roda na thread da requisição: o relatório servido é o último
+ * calculado, e um pedido de atualização só agenda uma varredura numa thread própria, uma
+ * de cada vez e no máximo uma a cada app.file.cold-tier.report-min-refresh-interval.
+ */
+@Service
+public class DocumentTieringService {
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.file.cold-tier.after-days:90}")
+    private int coldAfterDays;
+
+    @Value("${app.file.cold-tier.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.file.cold-tier.report-min-refresh-interval:10m}")
+    private Duration reportMinRefreshInterval;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicBoolean reportRunning = new AtomicBoolean();
+
+    // Início da última varredura pedida pelo relatório (System.nanoTime), 0 se nenhuma
+    private final AtomicLong lastRefreshStartedAt = new AtomicLong();
+
+    private volatile Map<String, Object> lastReport;
+
+    private final ExecutorService reportExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "storage-report");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    void shutdown() {
+        reportExecutor.shutdownNow();
+    }
+
+    /**
+     * @return quantidade de arquivos levados para a camada fria
+     */
+    @Scheduled(cron = "${app.file.cold-tier.cron:0 30 3 * * *}")
+    public int moveColdDocuments() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(coldAfterDays);
+            int moved = 0;
+            String after = "";
+            List<DocumentRepository.ColdCandidate> batch;
+            do {
+                batch = documentRepository.findColdCandidates(after, cutoff, PageRequest.of(0, batchSize));
+                for (DocumentRepository.ColdCandidate candidate : batch) {
+                    after = candidate.getContentHash();
+                    if (fileStorageService.isCold(candidate.getContentHash())) {
+                        continue;
+                    }
+                    try {
+                        if (fileStorageService.moveToColdTier(candidate.getContentHash(), candidate.getContentType())) {
+                            moved++;
+                        }
+                    } catch (IOException e) {
+                        // Continua na camada quente; a próxima execução tenta de novo
+                    }
+                }
+            } while (batch.size() == batchSize);
+            lastReport = buildReport();
+            return moved;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Último relatório de ocupação calculado (vazio se ainda não houver), com "refreshing"
+     * indicando se há uma varredura em andamento. Com {@code refresh}, ou sem relatório,
+     * agenda uma varredura em segundo plano se o intervalo mínimo já passou.
+     */
+    public Map<String, Object> getReport(boolean refresh) {
+        Map<String, Object> report = lastReport;
+        if (refresh || report == null) {
+            requestRefresh();
+        }
+        Map<String, Object> response = report != null ? new HashMap<>(report) : new HashMap<>();
+        response.put("refreshing", reportRunning.get());
+        return response;
+    }
+
+    private void requestRefresh() {
+        long now = System.nanoTime();
+        long startedAt = lastRefreshStartedAt.get();
+        if ((startedAt != 0 && now - startedAt < reportMinRefreshInterval.toNanos())
+                || !reportRunning.compareAndSet(false, true)) {
+            return;
+        }
+        lastRefreshStartedAt.set(now);
+        try {
+            reportExecutor.execute(() -> {
+                try {
+                    lastReport = buildReport();
+                } catch (RuntimeException e) {
+                    // Mantém o relatório anterior; o próximo pedido depois do intervalo tenta de novo
+                } finally {
+                    reportRunning.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Aplicação encerrando
+            reportRunning.set(false);
+        }
+    }
+
+    private Map<String, Object> buildReport() {
+        TierUsage hot = new TierUsage();
+        TierUsage cold = new TierUsage();
+        scan(hot, cold);
+        long documentBytes = documentRepository.sumFileSize();
+        long originalBytes = hot.originalBytes + cold.originalBytes;
+        long storedBytes = hot.storedBytes + cold.storedBytes;
+        long savedByDeduplication = Math.max(0, documentBytes - originalBytes);
+        long savedByCompression = originalBytes - storedBytes;
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("generatedAt", LocalDateTime.now());
+        report.put("documents", documentRepository.count());
+        report.put("documentBytes", documentBytes);
+        report.put("hot", hot.toMap());
+        report.put("cold", cold.toMap());
+        report.put("storedBytes", storedBytes);
+        report.put("savedByDeduplication", savedByDeduplication);
+        report.put("savedByCompression", savedByCompression);
+        report.put("bytesSaved", savedByDeduplication + savedByCompression);
+        return report;
+    }
+
+    private void scan(TierUsage hot, TierUsage cold) {
+        try {
+            fileStorageService.forEachStoredFile((key, storedSize, isCold) -> {
+                TierUsage usage = isCold ? cold : hot;
+                StoredFileCodec.Header header;
+                try {
+                    header = fileStorageService.readHeader(key);
+                } catch (NoSuchFileException e) {
+                    // Removido durante a varredura
+                    return;
+                }
+                usage.files++;
+                usage.storedBytes += storedSize;
+                if (header != null && header.codec() != StoredFileCodec.CODEC_NONE) {
+                    usage.compressedFiles++;
+                    usage.originalBytes += header.originalLength();
+                } else {
+                    usage.originalBytes += header != null ? header.originalLength() : storedSize;
+                }
+            });
+        } catch (IOException e) {
+            // Varredura parcial: o relatório sai com o que foi lido
+        }
+    }
+
+    private static final class TierUsage {
+        private long files;
+        private long compressedFiles;
+        private long originalBytes;
+        private long storedBytes;
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("files", files);
+            map.put("compressedFiles", compressedFiles);
+            map.put("originalBytes", originalBytes);
+            map.put("storedBytes", storedBytes);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.finman.service;
+
+import com.finman.model.enums.DocumentType;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.tomcat.util.http.fileupload.FileItemIterator;
+import org.apache.tomcat.util.http.fileupload.FileItemStream;
+import org.apache.tomcat.util.http.fileupload.FileUpload;
+import org.apache.tomcat.util.http.fileupload.FileUploadException;
+import org.apache.tomcat.util.http.fileupload.impl.SizeException;
+import org.apache.tomcat.util.http.fileupload.servlet.ServletRequestContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Recebe o upload de documentos lendo o corpo multipart em streaming, numa única passada:
+ * o arquivo vai direto do socket para o armazenamento, com hash calculado no caminho, sem o
+ * arquivo temporário do resolvedor multipart do Spring.
+ *
+ * Tipo e tamanho são verificados enquanto o corpo chega: o tipo pelo cabeçalho da parte,
+ * antes de gravar qualquer byte, e o tamanho a cada bloco lido, abortando a gravação assim
+ * que o limite é ultrapassado. Usa o parser de multipart embutido no Tomcat.
+ */
+@Service
+public class DocumentUploadService {
+
+    private static final int MAX_FIELD_LENGTH = 4096;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${spring.servlet.multipart.max-file-size:10MB}")
+    private DataSize maxFileSize;
+
+    @Value("${spring.servlet.multipart.max-request-size:10MB}")
+    private DataSize maxRequestSize;
+
+    public static boolean isMultipart(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase().startsWith("multipart/form-data");
+    }
+
+    public static boolean isAllowedContentType(String contentType) {
+        return contentType != null && (contentType.startsWith("image/") || contentType.equals("application/pdf"));
+    }
+
+    /**
+     * Lê os campos "documentType" e "description" e grava a parte "file".
+     *
+     * O arquivo devolvido fica pendente no {@link FileStorageService}: o chamador deve chamar
+     * {@link FileStorageService#releasePending(String)} depois de salvar o documento.
+     *
+     * @throws IllegalArgumentException com a mensagem para o cliente, se o upload for recusado
+     */
+    public Upload receive(HttpServletRequest request) throws IOException {
+        FileUpload upload = new FileUpload();
+        upload.setHeaderEncoding(StandardCharsets.UTF_8.name());
+        upload.setFileSizeMax(maxFileSize.toBytes());
+        // O corpo inteiro pode passar um pouco do arquivo: cabeçalhos das partes e campos de texto
+        upload.setSizeMax(maxRequestSize.toBytes() + 64 * 1024);
+
+        String documentType = null;
+        String description = null;
+        FileStorageService.StoredFile stored = null;
+        String originalFileName = null;
+        String contentType = null;
+        try {
+            FileItemIterator items = upload.getItemIterator(new ServletRequestContext(request));
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (item.isFormField()) {
+                    if ("documentType".equals(item.getFieldName())) {
+                        documentType = readField(item);
+                    } else if ("description".equals(item.getFieldName())) {
+                        description = readField(item);
+                    }
+                } else if ("file".equals(item.getFieldName())) {
+                    if (stored != null) {
+                        throw new IllegalArgumentException("Envie apenas um arquivo por documento");
+                    }
+                    // Recusado pelo cabeçalho da parte, antes de ler o conteúdo
+                    if (!isAllowedContentType(item.getContentType())) {
+                        throw new IllegalArgumentException("Apenas imagens e PDFs são permitidos");
+                    }
+                    try (InputStream in = item.openStream()) {
+                        stored = fileStorageService.store(in, item.getContentType());
+                    }
+                    originalFileName = item.getName();
+                    contentType = item.getContentType();
+                }
+            }
+
+            if (stored == null) {
+                throw new IllegalArgumentException("Arquivo não enviado");
+            }
+            DocumentType type = parseDocumentType(documentType);
+            return new Upload(type, description, stored, originalFileName, contentType);
+        } catch (FileUploadException e) {
+            discard(stored);
+            throw new IllegalArgumentException(rejectionMessage(e), e);
+        } catch (IOException e) {
+            discard(stored);
+            // Limite de tamanho estourado durante a leitura de uma parte
+            if (e.getCause() instanceof SizeException sizeException) {
+                throw new IllegalArgumentException(rejectionMessage(sizeException), e);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            discard(stored);
+            throw e;
+        }
+    }
+
+    private String rejectionMessage(FileUploadException e) {
+        if (e instanceof SizeException) {
+            return "Arquivo muito grande. Máximo " + maxFileSize.toMegabytes() + "MB";
+        }
+        return "Requisição multipart inválida";
+    }
+
+    private static String readField(FileItemStream item) throws IOException {
+        try (InputStream in = item.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (out.size() + read > MAX_FIELD_LENGTH) {
+                    throw new IllegalArgumentException("Campo muito grande: " + item.getFieldName());
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static DocumentType parseDocumentType(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Tipo de documento não informado");
+        }
+        try {
+            return DocumentType.valueOf(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Tipo de documento inválido: " + value);
+        }
+    }
+
+    // Upload recusado depois de gravar o arquivo (ex.: campo inválido após a parte do arquivo)
+    private void discard(FileStorageService.StoredFile stored) throws IOException {
+        if (stored != null) {
+            fileStorageService.releasePending(stored.contentHash());
+            fileStorageService.deleteIfUnreferenced(stored.contentHash());
+        }
+    }
+
+    public record Upload(DocumentType documentType, String description, FileStorageService.StoredFile file,
+                         String originalFileName, String contentType) {
+    }
+}
@@ -1,51 +1,411 @@
 package com.finman.service;
 
+import com.finman.model.Document;
+import com.finman.repository.DocumentRepository;
+import com.finman.repository.PendingContentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
+/**
+ * Armazenamento de arquivos endereçado por conteúdo: a chave do arquivo é o SHA-256 do
+ * conteúdo, calculado enquanto o upload é gravado. O mesmo arquivo enviado várias vezes
+ * fica uma vez só no armazenamento; os documentos que o referenciam são a contagem de
+ * referências, e o arquivo só é removido quando o último documento sai.
+ *
+ * Entre gravar o arquivo e salvar o documento, o hash fica "pendente" para que uma exclusão
+ * simultânea do mesmo conteúdo não apague o arquivo que está sendo reaproveitado. O pino fica
+ * na tabela pending_contents (um contador por hash), gravado e confirmado antes da entrega ao
+ * backend, e não na memória: com S3 e vários nós, a exclusão num nó enxerga o upload em curso
+ * em outro. Pino e remoção travam a mesma linha, então uma remoção já iniciada termina antes
+ * do pino, e o upload que vem depois grava o conteúdo de novo. Pinos de um nó que caiu antes
+ * de liberá-los expiram depois de app.file.pending-ttl.
+ *
+ * Os bytes ficam no {@link DocumentStore} configurado (disco local, S3 ou memória). O upload
+ * é sempre gravado primeiro num temporário local, onde hash e compressão são calculados, e
+ * só então entregue ao backend. Arquivos ainda na raiz do diretório de uploads (gravados
+ * antes do backend, ou com o nome antigo UUID_nome) continuam sendo encontrados até a
+ * migração movê-los.
+ *
+ * PDFs são gravados comprimidos (ver {@link StoredFileCodec}) quando a compressão
+ * compensa. A leitura passa sempre por {@link #open(String)}, que descomprime durante o envio.
+ */
 @Service
 public class FileStorageService {
-    
+
     @Value("${app.file.upload-dir:uploads}")
     private String uploadDir;
-    
-    public String storeFile(MultipartFile file) throws IOException {
-        // Criar diretório se não existir
+
+    @Value("${app.file.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    @Value("${app.file.compression.level:6}")
+    private int compressionLevel;
+
+    // Economia mínima (em %) para manter um arquivo comprimido
+    @Value("${app.file.compression.min-saving-percent:10}")
+    private int minSavingPercent;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private PendingContentRepository pendingContentRepository;
+
+    @Autowired
+    private DocumentStore documentStore;
+
+    @Value("${app.file.pending-ttl:1h}")
+    private Duration pendingTtl;
+
+    // Pino e remoção esbarram um no outro na linha do hash (timeout de lock ou chave duplicada)
+    private static final int PENDING_ATTEMPTS = 5;
+
+    // Transação própria: o pino precisa estar confirmado antes da gravação no backend
+    private final TransactionTemplate transactionTemplate;
+
+    // Locks por faixa de hash: gravação e remoção do mesmo conteúdo não se intercalam
+    private final Object[] locks = new Object[64];
+
+    private static final Pattern CONTENT_HASH = Pattern.compile("[0-9a-f]{64}");
+
+    public FileStorageService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Grava o conteúdo num arquivo temporário calculando o hash e o entrega ao backend, ou
+     * descarta o temporário se o conteúdo já existir. O chamador deve chamar
+     * {@link #releasePending(String)} depois de salvar (ou desistir de salvar) o documento.
+     *
+     * Conteúdo compressível é comprimido durante a própria gravação; o hash é sempre o do
+     * conteúdo original.
+     */
+    public StoredFile store(InputStream in, String contentType) throws IOException {
+        Path uploadPath = createUploadDir();
+        Path temp = uploadPath.resolve(".upload-" + UUID.randomUUID());
+        MessageDigest digest = sha256();
+        long size;
+        try {
+            if (compressionEnabled && StoredFileCodec.isCompressible(contentType)) {
+                try (OutputStream out = new DigestOutputStream(StoredFileCodec.compressingOutput(temp, compressionLevel), digest)) {
+                    size = in.transferTo(out);
+                }
+                StoredFileCodec.finishHeader(temp, size);
+                if (!StoredFileCodec.worthCompressing(size, Files.size(temp), minSavingPercent)) {
+                    StoredFileCodec.decodeInPlace(temp);
+                }
+            } else {
+                try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                    size = in.transferTo(out);
+                }
+                StoredFileCodec.frameIfAmbiguous(temp);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            publish(temp, hash);
+            return new StoredFile(hash, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Traz para o armazenamento por hash um arquivo no formato antigo (UUID_nome), sem
+     * removê-lo. Usado pela migração; também deixa o hash pendente.
+     */
+    public StoredFile adoptLegacyFile(String fileName, String contentType) throws IOException {
+        try (InputStream in = Files.newInputStream(flatPath(fileName))) {
+            return store(in, contentType);
+        }
+    }
+
+    // Documento salvo (ou upload abandonado): o hash volta a poder ser removido
+    public void releasePending(String contentHash) {
+        inPendingTransaction(status -> {
+            pendingContentRepository.unpin(contentHash);
+            pendingContentRepository.deleteUnpinned(contentHash, staleBefore());
+            return null;
+        });
+    }
+
+    /**
+     * Remove o arquivo se nenhum documento o referencia mais. Chamar depois de excluir o documento.
+     *
+     * @return true se o arquivo foi removido
+     */
+    public boolean deleteIfUnreferenced(String contentHash) throws IOException {
+        synchronized (lockFor(contentHash)) {
+            try {
+                return inPendingTransaction(status -> {
+                    // A linha do hash fica travada até o fim da remoção; sem linha, uma vazia é criada só para isso
+                    if (pendingContentRepository.deleteUnpinned(contentHash, staleBefore()) == 0) {
+                        if (pendingContentRepository.existsById(contentHash)) {
+                            return false;
+                        }
+                        pendingContentRepository.insert(contentHash, 0, LocalDateTime.now());
+                        pendingContentRepository.deleteUnpinned(contentHash, staleBefore());
+                    }
+                    if (documentRepository.countByContentHash(contentHash) > 0) {
+                        return false;
+                    }
+                    try {
+                        documentStore.delete(contentHash);
+                        Files.deleteIfExists(flatPath(contentHash));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return true;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Arquivo de um documento já excluído: compartilhado por hash, ou no formato antigo
+     * (sem hash), que pertence só a ele.
+     */
+    public void deleteDocumentFile(Document document) throws IOException {
+        if (document.getContentHash() != null) {
+            deleteIfUnreferenced(document.getContentHash());
+        } else {
+            deleteFile(document.getFileName());
+        }
+    }
+
+    /**
+     * Conteúdo original do arquivo, para envio em streaming (sem carregar o conteúdo no heap).
+     * Arquivos no disco local são lidos direto dele; os demais, do backend por intervalos.
+     *
+     * @return null se o arquivo não existe
+     */
+    public StoredContent open(String fileName) throws IOException {
+        Path local = localFile(fileName);
+        if (local != null) {
+            StoredFileCodec.Header header = StoredFileCodec.readHeader(local);
+            if (header == null) {
+                return StoredContent.ofPlainFile(local);
+            }
+            return new StoredContent(header.originalLength(), null, offset -> {
+                InputStream in = StoredFileCodec.openContent(local);
+                return skip(in, offset);
+            });
+        }
+        if (!isContentHash(fileName)) {
+            return null;
+        }
+
+        byte[] prefix;
+        try (InputStream in = documentStore.open(fileName, 0, StoredFileCodec.HEADER_LENGTH)) {
+            prefix = in.readNBytes(StoredFileCodec.HEADER_LENGTH);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        StoredFileCodec.Header header = StoredFileCodec.parseHeader(prefix);
+        if (header == null) {
+            long length = prefix.length < StoredFileCodec.HEADER_LENGTH ? prefix.length : documentStore.size(fileName);
+            return new StoredContent(length, null, offset -> documentStore.open(fileName, offset, -1));
+        }
+        if (header.codec() == StoredFileCodec.CODEC_NONE) {
+            return new StoredContent(header.originalLength(), null,
+                    offset -> documentStore.open(fileName, StoredFileCodec.HEADER_LENGTH + offset, -1));
+        }
+        return new StoredContent(header.originalLength(), null, offset -> {
+            InputStream body = documentStore.open(fileName, StoredFileCodec.HEADER_LENGTH, -1);
+            try {
+                return skip(StoredFileCodec.decode(header, body), offset);
+            } catch (IOException | RuntimeException e) {
+                body.close();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Cabeçalho gravado do arquivo (lê só os primeiros bytes).
+     *
+     * @return o cabeçalho, ou null se o arquivo é o conteúdo puro
+     */
+    public StoredFileCodec.Header readHeader(String contentHash) throws IOException {
+        Path local = localFile(contentHash);
+        if (local != null) {
+            return StoredFileCodec.readHeader(local);
+        }
+        try (InputStream in = documentStore.open(contentHash, 0, StoredFileCodec.HEADER_LENGTH)) {
+            return StoredFileCodec.parseHeader(in.readNBytes(StoredFileCodec.HEADER_LENGTH));
+        }
+    }
+
+    // Arquivo no formato antigo (UUID_nome), que fica fora do backend
+    public void deleteFile(String fileName) throws IOException {
+        Files.deleteIfExists(flatPath(fileName));
+    }
+
+    public boolean fileExists(String fileName) throws IOException {
+        return Files.exists(flatPath(fileName)) || (isContentHash(fileName) && documentStore.exists(fileName));
+    }
+
+    public Path getUploadRoot() {
+        return Paths.get(uploadDir);
+    }
+
+    public static boolean isContentHash(String fileName) {
+        return fileName != null && CONTENT_HASH.matcher(fileName).matches();
+    }
+
+    // Percorre os arquivos do backend (não inclui os que ainda estão na raiz do diretório de uploads)
+    public void forEachStoredFile(DocumentStore.Visitor visitor) throws IOException {
+        documentStore.forEach(visitor);
+    }
+
+    /**
+     * Entrega ao backend um arquivo por hash que ainda está na raiz do diretório de uploads.
+     * Se o mesmo conteúdo já existe no backend, a cópia da raiz é removida.
+     *
+     * @return true se o arquivo saiu da raiz
+     */
+    public boolean moveToStore(String contentHash) throws IOException {
+        synchronized (lockFor(contentHash)) {
+            Path flat = flatPath(contentHash);
+            if (!Files.isRegularFile(flat)) {
+                return false;
+            }
+            documentStore.put(contentHash, flat);
+            Files.deleteIfExists(flat);
+            return true;
+        }
+    }
+
+    /**
+     * Leva um arquivo para a camada fria do backend, se ele tiver uma.
+     *
+     * @return true se o arquivo foi movido
+     */
+    public boolean moveToColdTier(String contentHash, String contentType) throws IOException {
+        synchronized (lockFor(contentHash)) {
+            return documentStore.moveToColdTier(contentHash, contentType);
+        }
+    }
+
+    public boolean isCold(String contentHash) {
+        return documentStore.isCold(contentHash);
+    }
+
+    /**
+     * O pino é confirmado antes da gravação no backend, que acontece fora de qualquer lock:
+     * um upload lento para o S3 não segura as exclusões de outros conteúdos.
+     */
+    private void publish(Path temp, String hash) throws IOException {
+        inPendingTransaction(status -> {
+            if (pendingContentRepository.pin(hash, LocalDateTime.now()) == 0) {
+                pendingContentRepository.insert(hash, 1, LocalDateTime.now());
+            }
+            return null;
+        });
+        try {
+            // Conteúdo já gravado, no backend ou ainda na raiz
+            if (!Files.exists(flatPath(hash))) {
+                documentStore.put(hash, temp);
+            }
+        } catch (IOException | RuntimeException e) {
+            releasePending(hash);
+            throw e;
+        }
+    }
+
+    private LocalDateTime staleBefore() {
+        return LocalDateTime.now().minus(pendingTtl);
+    }
+
+    // Outro nó criando a mesma linha ou removendo o conteúdo: tenta de novo em outra transação
+    private <T> T inPendingTransaction(TransactionCallback<T> callback) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(callback);
+            } catch (DataIntegrityViolationException | PessimisticLockingFailureException e) {
+                if (attempt == PENDING_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Arquivo no disco local: na raiz do diretório de uploads, ou no backend se ele for local
+    private Path localFile(String fileName) {
+        Path flat = flatPath(fileName);
+        if (Files.exists(flat)) {
+            return flat;
+        }
+        return isContentHash(fileName) ? documentStore.localPath(fileName) : null;
+    }
+
+    private static InputStream skip(InputStream in, long offset) throws IOException {
+        try {
+            in.skipNBytes(offset);
+            return in;
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private Path createUploadDir() throws IOException {
         Path uploadPath = Paths.get(uploadDir);
         if (!Files.exists(uploadPath)) {
             Files.createDirectories(uploadPath);
         }
-        
-        // Gerar nome único para o arquivo
-        String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-        
-        // Salvar arquivo
-        Path filePath = uploadPath.resolve(fileName);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-        
-        return fileName;
-    }
-    
-    public byte[] loadFileAsBytes(String fileName) throws IOException {
-        Path filePath = Paths.get(uploadDir).resolve(fileName);
-        return Files.readAllBytes(filePath);
-    }
-    
-    public void deleteFile(String fileName) throws IOException {
-        Path filePath = Paths.get(uploadDir).resolve(fileName);
-        Files.deleteIfExists(filePath);
+        return uploadPath;
     }
-    
-    public boolean fileExists(String fileName) {
-        Path filePath = Paths.get(uploadDir).resolve(fileName);
-        return Files.exists(filePath);
+
+    private Path flatPath(String fileName) {
+        return Paths.get(uploadDir).resolve(fileName);
+    }
+
+    private Object lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), locks.length)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    // Arquivo gravado: o hash é também a chave do arquivo no backend
+    public record StoredFile(String contentHash, long size) {
+
+        public String fileName() {
+            return contentHash;
+        }
     }
 }
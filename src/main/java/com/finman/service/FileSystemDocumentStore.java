@@ -0,0 +1,172 @@
+package com.finman.service;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Arquivos no disco local (ou num volume compartilhado entre os nós), em dois níveis de
+ * subdiretórios pelo prefixo do hash (ab/cd/abcd...), para que nenhum diretório passe de
+ * alguns milhares de entradas. A camada fria é um segundo diretório com o mesmo layout,
+ * onde o conteúdo compressível é regravado no nível de compressão mais alto.
+ */
+@Service
+@ConditionalOnProperty(name = "app.document.store.type", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemDocumentStore implements DocumentStore {
+
+    @Value("${app.file.upload-dir:uploads}")
+    private String uploadDir;
+
+    @Value("${app.file.cold-dir:uploads-cold}")
+    private String coldDir;
+
+    @Value("${app.file.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    @Value("${app.file.compression.cold-level:9}")
+    private int coldCompressionLevel;
+
+    @Value("${app.file.compression.min-saving-percent:10}")
+    private int minSavingPercent;
+
+    // Move o arquivo (o temporário fica no mesmo sistema de arquivos, então é um rename)
+    @Override
+    public void put(String key, Path source) throws IOException {
+        if (exists(key)) {
+            return;
+        }
+        Path target = hotPath(key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Outra requisição gravou o mesmo conteúdo primeiro
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return localPath(key) != null;
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        Path file = localPath(key);
+        return file != null ? Files.size(file) : -1;
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        Path file = localPath(key);
+        if (file == null) {
+            throw new NoSuchFileException(key);
+        }
+        InputStream in = Files.newInputStream(file);
+        in.skipNBytes(offset);
+        return length >= 0 ? new BoundedInputStream(in, length) : in;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(hotPath(key));
+        Files.deleteIfExists(coldPath(key));
+    }
+
+    @Override
+    public void forEach(Visitor visitor) throws IOException {
+        visit(Paths.get(uploadDir), false, visitor);
+        visit(Paths.get(coldDir), true, visitor);
+    }
+
+    @Override
+    public Path localPath(String key) {
+        Path hot = hotPath(key);
+        if (Files.exists(hot)) {
+            return hot;
+        }
+        Path cold = coldPath(key);
+        return Files.exists(cold) ? cold : null;
+    }
+
+    /**
+     * A cópia fria é completada antes de a quente ser removida: quem já abriu o arquivo
+     * quente continua lendo, e quem resolve o caminho depois encontra o frio.
+     */
+    @Override
+    public boolean moveToColdTier(String key, String contentType) throws IOException {
+        Path hot = hotPath(key);
+        if (!Files.isRegularFile(hot)) {
+            return false;
+        }
+        Path cold = coldPath(key);
+        Files.createDirectories(cold.getParent());
+        if (!Files.exists(cold)) {
+            Path temp = cold.resolveSibling(".cold-" + UUID.randomUUID());
+            try {
+                if (compressionEnabled && StoredFileCodec.isCompressible(contentType)) {
+                    StoredFileCodec.encode(hot, temp, coldCompressionLevel, minSavingPercent);
+                } else {
+                    Files.copy(hot, temp);
+                }
+                Files.move(temp, cold, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        Files.delete(hot);
+        return true;
+    }
+
+    @Override
+    public boolean isCold(String key) {
+        return Files.exists(coldPath(key));
+    }
+
+    private static void visit(Path root, boolean cold, Visitor visitor) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        // Só os arquivos no terceiro nível (ab/cd/hash); temporários e arquivos antigos da raiz ficam de fora
+        try (Stream<Path> files = Files.find(root, 3, (path, attributes) -> attributes.isRegularFile()
+                && root.relativize(path).getNameCount() == 3
+                && FileStorageService.isContentHash(path.getFileName().toString()))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                try {
+                    visitor.visit(file.getFileName().toString(), Files.size(file), cold);
+                } catch (NoSuchFileException e) {
+                    // Removido durante a varredura
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Path hotPath(String key) {
+        return sharded(Paths.get(uploadDir), key);
+    }
+
+    private Path coldPath(String key) {
+        return sharded(Paths.get(coldDir), key);
+    }
+
+    private static Path sharded(Path root, String key) {
+        return root
+                .resolve(key.substring(0, 2))
+                .resolve(key.substring(2, 4))
+                .resolve(key);
+    }
+}
@@ -0,0 +1,232 @@
+package com.finman.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finman.model.IdempotencyRecord;
+import com.finman.repository.IdempotencyRecordRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Suporte ao header Idempotency-Key nos endpoints que movimentam dinheiro.
+ *
+ * A primeira execução de uma chave guarda status e corpo da resposta; repetições devolvem
+ * a resposta guardada sem executar de novo. A chave é registrada na tabela idempotency_keys
+ * (INSERT pela chave primária) na mesma transação da ação, antes dela: outro nó com a mesma
+ * chave esbarra na chave primária e devolve a resposta guardada, e uma queda antes do commit
+ * desfaz a ação junto com o registro. As chaves recentes ficam num LinkedHashMap em ordem
+ * de acesso, limitado e sincronizado; atingido o limite sai a chave usada há mais tempo
+ * (LRU). A tabela é consultada quando a chave não está em memória (reinício, outro nó ou
+ * chave já descartada).
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    // A coluna tem 255 caracteres e a chave gravada inclui o escopo
+    public static final int MAX_KEY_LENGTH = 200;
+
+    // Marca a chave como em execução neste nó
+    private static final StoredResponse IN_PROGRESS = new StoredResponse(null, 0, null);
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${app.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Ordem de acesso: a consulta também move a chave para o fim. Acessado sob o lock do próprio mapa
+    private final Map<String, StoredResponse> recent = new LinkedHashMap<>(16, 0.75f, true);
+
+    public IdempotencyService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Valor no fingerprint sem depender da escala: 10.0 e 10.00 são o mesmo pedido
+    public static String amountFingerprint(BigDecimal amount) {
+        return "amount=" + (amount != null ? amount.stripTrailingZeros().toPlainString() : null);
+    }
+
+    /**
+     * Executa {@code action} uma única vez por chave. Sem chave, apenas executa.
+     *
+     * A ação roda dentro da transação que registra a chave. Se ela falhar, lançar exceção ou
+     * deixar a transação marcada para rollback, nada é guardado e a repetição executa de novo.
+     *
+     * @param scope       operação e recurso (ex.: "installment-pay:42"), para a mesma chave não colidir entre endpoints
+     * @param fingerprint parâmetros relevantes do pedido; reusar a chave com outros parâmetros devolve 422
+     */
+    public ResponseEntity<?> execute(String scope, String idempotencyKey, String fingerprint,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        if (idempotencyKey.trim().length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body("Idempotency-Key deve ter no máximo " + MAX_KEY_LENGTH + " caracteres");
+        }
+
+        String key = scope + ":" + idempotencyKey.trim();
+        StoredResponse stored;
+        synchronized (recent) {
+            stored = recent.get(key);
+        }
+        if (stored == null) {
+            stored = loadFromDatabase(key).orElse(null);
+        }
+        if (stored != null) {
+            return replay(stored, fingerprint);
+        }
+
+        StoredResponse running;
+        synchronized (recent) {
+            running = recent.putIfAbsent(key, IN_PROGRESS);
+        }
+        if (running != null) {
+            return replay(running, fingerprint);
+        }
+
+        try {
+            Execution execution = transactionTemplate.execute(status -> {
+                claim(key, fingerprint);
+                ResponseEntity<?> response = action.get();
+                // Erros de servidor e ações desfeitas não são guardados: a repetição deve tentar de novo
+                if (response.getStatusCode().is5xxServerError() || status.isRollbackOnly()) {
+                    status.setRollbackOnly();
+                    return new Execution(response, null);
+                }
+                StoredResponse result = new StoredResponse(fingerprint, response.getStatusCode().value(), toJson(response.getBody()));
+                idempotencyRecordRepository.complete(key, result.statusCode, result.body);
+                return new Execution(response, result);
+            });
+            if (execution.result != null) {
+                remember(key, execution.result);
+            }
+            return execution.response;
+        } catch (KeyClaimedException e) {
+            // Outro nó registrou a chave primeiro: devolve a resposta dele, ou 409 se ainda não terminou
+            return replay(loadFromDatabase(key).orElse(IN_PROGRESS), fingerprint);
+        } finally {
+            // Sem resultado guardado (erro, rollback, chave de outro nó) a marca não pode ficar para trás
+            synchronized (recent) {
+                recent.remove(key, IN_PROGRESS);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now().minusHours(ttlHours));
+    }
+
+    /**
+     * INSERT da chave na transação corrente. Uma chave expirada ainda não expurgada é
+     * removida antes; uma chave vigente de outra requisição viola a chave primária (ou espera
+     * o lock da linha dela até o timeout).
+     */
+    private void claim(String key, String fingerprint) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            idempotencyRecordRepository.deleteExpired(key, now.minusHours(ttlHours));
+            idempotencyRecordRepository.claim(key, fingerprint, now);
+        } catch (DataIntegrityViolationException | PessimisticLockingFailureException e) {
+            throw new KeyClaimedException();
+        }
+    }
+
+    private Optional<StoredResponse> loadFromDatabase(String key) {
+        return idempotencyRecordRepository.findById(key)
+                .filter(record -> record.getCreatedAt().isAfter(LocalDateTime.now().minusHours(ttlHours)))
+                .map(record -> {
+                    StoredResponse stored = new StoredResponse(record.getRequestFingerprint(),
+                            record.getStatusCode(), record.getResponseBody());
+                    remember(key, stored);
+                    return stored;
+                });
+    }
+
+    // Acima do limite descarta as chaves usadas há mais tempo; as que estão em execução ficam
+    private void remember(String key, StoredResponse stored) {
+        synchronized (recent) {
+            recent.put(key, stored);
+            Iterator<StoredResponse> eldest = recent.values().iterator();
+            int excess = recent.size() - cacheSize;
+            while (excess > 0 && eldest.hasNext()) {
+                if (eldest.next() != IN_PROGRESS) {
+                    eldest.remove();
+                    excess--;
+                }
+            }
+        }
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String fingerprint) {
+        if (stored == IN_PROGRESS) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Requisição com esta Idempotency-Key ainda em processamento");
+        }
+        if (!Objects.equals(stored.fingerprint, fingerprint)) {
+            return ResponseEntity.unprocessableEntity().body("Idempotency-Key já usada com outros parâmetros");
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.statusCode).header("Idempotent-Replayed", "true");
+        if (stored.body == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(stored.body);
+    }
+
+    private String toJson(Object body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Não foi possível serializar a resposta", e);
+        }
+    }
+
+    private record Execution(ResponseEntity<?> response, StoredResponse result) {
+    }
+
+    private static final class KeyClaimedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final class StoredResponse {
+        private final String fingerprint;
+        private final int statusCode;
+        private final String body;
+
+        StoredResponse(String fingerprint, int statusCode, String body) {
+            this.fingerprint = fingerprint;
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+    }
+}
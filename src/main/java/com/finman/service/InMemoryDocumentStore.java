@@ -0,0 +1,65 @@
+package com.finman.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Backend em memória, dentro do processo: substitui o disco ou o S3 em testes e em
+ * ambientes de desenvolvimento. Nada sobrevive a um reinício.
+ */
+@Service
+@ConditionalOnProperty(name = "app.document.store.type", havingValue = "memory")
+public class InMemoryDocumentStore implements DocumentStore {
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        if (!objects.containsKey(key)) {
+            objects.putIfAbsent(key, Files.readAllBytes(source));
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return objects.containsKey(key);
+    }
+
+    @Override
+    public long size(String key) {
+        byte[] bytes = objects.get(key);
+        return bytes != null ? bytes.length : -1;
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        byte[] bytes = objects.get(key);
+        if (bytes == null) {
+            throw new NoSuchFileException(key);
+        }
+        int start = (int) Math.min(offset, bytes.length);
+        int count = length >= 0 ? (int) Math.min(length, bytes.length - start) : bytes.length - start;
+        return new ByteArrayInputStream(bytes, start, count);
+    }
+
+    @Override
+    public void delete(String key) {
+        objects.remove(key);
+    }
+
+    @Override
+    public void forEach(Visitor visitor) throws IOException {
+        for (Map.Entry<String, byte[]> entry : objects.entrySet()) {
+            visitor.visit(entry.getKey(), entry.getValue().length, false);
+        }
+    }
+}
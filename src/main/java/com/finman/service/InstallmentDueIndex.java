@@ -0,0 +1,456 @@
+package com.finman.service;
+
+import com.finman.model.LoanInstallment;
+import com.finman.repository.LoanInstallmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Índice em memória das parcelas em aberto, ordenado por dia de vencimento (epoch-day).
+ *
+ * Consultas de "vencidas até hoje", "vencendo nos próximos N dias" e vencidas por empréstimo
+ * percorrem só as parcelas que atendem ao filtro, sem varrer loan_installments. O índice é
+ * carregado quando a aplicação sobe, atualizado após o commit de cada criação, pagamento ou
+ * exclusão, e reconstruído periodicamente a partir do banco para corrigir qualquer desvio.
+ * Enquanto não estiver carregado, {@link #isReady()} retorna false e quem consulta deve
+ * usar o banco.
+ */
+@Service
+public class InstallmentDueIndex {
+
+    @Autowired
+    private LoanInstallmentRepository installmentRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Buckets buckets = new Buckets();
+
+    private volatile boolean ready;
+
+    // Incrementada a cada alteração do índice
+    private volatile long version;
+
+    // Última contagem de vencidas (dia, versão do índice e total)
+    private volatile OverdueCount overdueCount;
+
+    // Alterações feitas enquanto uma reconstrução lê o banco; reaplicadas no índice novo
+    private List<Consumer<Buckets>> journal;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${app.installment.due-index.rebuild-interval-ms:3600000}",
+               initialDelayString = "${app.installment.due-index.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            journal = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Buckets rebuilt = new Buckets();
+        try {
+            for (LoanInstallmentRepository.DueEntry due : installmentRepository.findUnpaidDueEntries()) {
+                rebuilt.add(due.getInstallmentId(), due.getLoanId(), due.getDueDate().toEpochDay());
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                journal = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            journal.forEach(change -> change.accept(rebuilt));
+            journal = null;
+            buckets = rebuilt;
+            ready = true;
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // Consultas: ids das parcelas em ordem de vencimento
+
+    public List<Long> findOverdue(LocalDate asOf) {
+        lock.readLock().lock();
+        try {
+            return buckets.idsByDay(buckets.byDay.headMap(asOf.toEpochDay(), false));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Soma os tamanhos dos dias anteriores a {@code asOf}: custo proporcional à quantidade de
+     * dias com vencimento, não de parcelas. O resultado fica guardado até o índice mudar ou a
+     * data pedida ser outra, já que o dashboard pede sempre o mesmo dia.
+     */
+    public long countOverdue(LocalDate asOf) {
+        long epochDay = asOf.toEpochDay();
+        lock.readLock().lock();
+        try {
+            OverdueCount cached = overdueCount;
+            if (cached != null && cached.epochDay() == epochDay && cached.version() == version) {
+                return cached.count();
+            }
+            long count = 0;
+            for (DueList day : buckets.byDay.headMap(epochDay, false).values()) {
+                count += day.size();
+            }
+            overdueCount = new OverdueCount(epochDay, version, count);
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Long> findOverdue(Long loanId, LocalDate asOf) {
+        lock.readLock().lock();
+        try {
+            DueList loanEntries = buckets.byLoan.get(loanId);
+            if (loanEntries == null) {
+                return List.of();
+            }
+            int end = loanEntries.firstIndexOfDay(asOf.toEpochDay());
+            List<Long> ids = new ArrayList<>(end);
+            for (int i = 0; i < end; i++) {
+                ids.add(loanEntries.installmentId(i));
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Parcelas com vencimento entre {@code from} e {@code to}, inclusive.
+     */
+    public List<Long> findDueBetween(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            return buckets.idsByDay(buckets.byDay.subMap(from.toEpochDay(), true, to.toEpochDay(), true));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Atualizações: aplicadas após o commit da transação corrente (ou na hora, sem transação)
+
+    public void installmentsCreated(Collection<LoanInstallment> installments) {
+        // id, empréstimo e dia de cada parcela em aberto, em sequência
+        long[] entries = new long[installments.size() * 3];
+        int count = 0;
+        for (LoanInstallment installment : installments) {
+            if (!Boolean.TRUE.equals(installment.getIsPaid()) && installment.getDueDate() != null) {
+                entries[count++] = installment.getId();
+                entries[count++] = installment.getLoan().getId();
+                entries[count++] = installment.getDueDate().toEpochDay();
+            }
+        }
+        if (count > 0) {
+            int length = count;
+            afterCommit(index -> {
+                for (int i = 0; i < length; i += 3) {
+                    index.add(entries[i], entries[i + 1], entries[i + 2]);
+                }
+            });
+        }
+    }
+
+    public void installmentsRemoved(Collection<Long> installmentIds) {
+        if (!installmentIds.isEmpty()) {
+            List<Long> ids = List.copyOf(installmentIds);
+            afterCommit(index -> ids.forEach(index::remove));
+        }
+    }
+
+    public void loansRemoved(Collection<Long> loanIds) {
+        if (!loanIds.isEmpty()) {
+            List<Long> ids = List.copyOf(loanIds);
+            afterCommit(index -> ids.forEach(index::removeLoan));
+        }
+    }
+
+    private void afterCommit(Consumer<Buckets> change) {
+        AfterCommit.run(() -> apply(change));
+    }
+
+    private void apply(Consumer<Buckets> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(buckets);
+            version++;
+            if (journal != null) {
+                journal.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private record OverdueCount(long epochDay, long version, long count) {
+    }
+
+    /**
+     * Parcelas em aberto em estruturas de long primitivo: um balde por dia de vencimento, uma
+     * lista por empréstimo e uma tabela de ids. O único objeto por entrada é o do dia (e o do
+     * empréstimo), então milhões de parcelas cabem em poucas dezenas de bytes cada, contra
+     * algumas centenas com um nó de TreeSet/HashMap e um Long por parcela.
+     */
+    private static final class Buckets {
+        // Dia de vencimento -> parcelas do dia, em ordem de id
+        private final TreeMap<Long, DueList> byDay = new TreeMap<>();
+        // Empréstimo -> parcelas em ordem de vencimento e id
+        private final Map<Long, DueList> byLoan = new HashMap<>();
+        // Parcela -> dia de vencimento e empréstimo
+        private final DueTable byId = new DueTable();
+
+        void add(long installmentId, long loanId, long epochDay) {
+            remove(installmentId);
+            byId.put(installmentId, loanId, epochDay);
+            byDay.computeIfAbsent(epochDay, day -> new DueList()).add(epochDay, installmentId);
+            byLoan.computeIfAbsent(loanId, id -> new DueList()).add(epochDay, installmentId);
+        }
+
+        void remove(long installmentId) {
+            int slot = byId.find(installmentId);
+            if (slot < 0) {
+                return;
+            }
+            long loanId = byId.loanId(slot);
+            long epochDay = byId.epochDay(slot);
+            byId.removeAt(slot);
+            removeFrom(byDay, epochDay, epochDay, installmentId);
+            removeFrom(byLoan, loanId, epochDay, installmentId);
+        }
+
+        void removeLoan(long loanId) {
+            DueList loanEntries = byLoan.remove(loanId);
+            if (loanEntries == null) {
+                return;
+            }
+            for (int i = 0; i < loanEntries.size(); i++) {
+                long installmentId = loanEntries.installmentId(i);
+                long epochDay = loanEntries.epochDay(i);
+                int slot = byId.find(installmentId);
+                if (slot >= 0) {
+                    byId.removeAt(slot);
+                }
+                removeFrom(byDay, epochDay, epochDay, installmentId);
+            }
+        }
+
+        List<Long> idsByDay(Map<Long, DueList> days) {
+            int total = 0;
+            for (DueList day : days.values()) {
+                total += day.size();
+            }
+            List<Long> ids = new ArrayList<>(total);
+            for (DueList day : days.values()) {
+                for (int i = 0; i < day.size(); i++) {
+                    ids.add(day.installmentId(i));
+                }
+            }
+            return ids;
+        }
+
+        private static void removeFrom(Map<Long, DueList> lists, long key, long epochDay, long installmentId) {
+            DueList list = lists.get(key);
+            if (list != null && list.remove(epochDay, installmentId) && list.size() == 0) {
+                lists.remove(key);
+            }
+        }
+    }
+
+    // Pares (dia, id) em arrays paralelos, ordenados por dia e depois por id
+    private static final class DueList {
+        private long[] epochDays = new long[4];
+        private long[] installmentIds = new long[4];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        long epochDay(int index) {
+            return epochDays[index];
+        }
+
+        long installmentId(int index) {
+            return installmentIds[index];
+        }
+
+        void add(long epochDay, long installmentId) {
+            int index = search(epochDay, installmentId);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == epochDays.length) {
+                epochDays = Arrays.copyOf(epochDays, size * 2);
+                installmentIds = Arrays.copyOf(installmentIds, size * 2);
+            }
+            System.arraycopy(epochDays, index, epochDays, index + 1, size - index);
+            System.arraycopy(installmentIds, index, installmentIds, index + 1, size - index);
+            epochDays[index] = epochDay;
+            installmentIds[index] = installmentId;
+            size++;
+        }
+
+        boolean remove(long epochDay, long installmentId) {
+            int index = search(epochDay, installmentId);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(epochDays, index + 1, epochDays, index, size - index - 1);
+            System.arraycopy(installmentIds, index + 1, installmentIds, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        // Posição da primeira entrada do dia (ou do primeiro dia depois dele)
+        int firstIndexOfDay(long epochDay) {
+            int index = search(epochDay, Long.MIN_VALUE);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        // Como Arrays.binarySearch: a posição, ou -(ponto de inserção) - 1
+        private int search(long epochDay, long installmentId) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = epochDays[mid] != epochDay ? Long.compare(epochDays[mid], epochDay)
+                        : Long.compare(installmentIds[mid], installmentId);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+    // Tabela hash de endereçamento aberto (sondagem linear): id da parcela -> empréstimo e dia
+    private static final class DueTable {
+        private long[] keys = new long[16];
+        private long[] loanIds = new long[16];
+        private long[] epochDays = new long[16];
+        private boolean[] used = new boolean[16];
+        private int size;
+
+        long loanId(int slot) {
+            return loanIds[slot];
+        }
+
+        long epochDay(int slot) {
+            return epochDays[slot];
+        }
+
+        int find(long key) {
+            int mask = keys.length - 1;
+            for (int slot = slotOf(key, mask); used[slot]; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, long loanId, long epochDay) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = slotOf(key, mask);
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                size++;
+            }
+            loanIds[slot] = loanId;
+            epochDays[slot] = epochDay;
+        }
+
+        // Remoção com deslocamento para trás: sem marcas de removido, as buscas continuam curtas
+        void removeAt(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; used[next]; next = (next + 1) & mask) {
+                int home = slotOf(keys[next], mask);
+                // A entrada pode ir para o buraco se a posição ideal dela não está entre o buraco e ela
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    loanIds[hole] = loanIds[next];
+                    epochDays[hole] = epochDays[next];
+                    hole = next;
+                }
+            }
+            used[hole] = false;
+            size--;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldLoanIds = loanIds;
+            long[] oldEpochDays = epochDays;
+            boolean[] oldUsed = used;
+            int capacity = oldKeys.length * 2;
+            keys = new long[capacity];
+            loanIds = new long[capacity];
+            epochDays = new long[capacity];
+            used = new boolean[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    put(oldKeys[i], oldLoanIds[i], oldEpochDays[i]);
+                }
+            }
+        }
+
+        private static int slotOf(long key, int mask) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
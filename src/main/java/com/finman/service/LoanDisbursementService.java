@@ -0,0 +1,78 @@
+package com.finman.service;
+
+import com.finman.model.Loan;
+import com.finman.model.LoanInstallment;
+import com.finman.model.Transaction;
+import com.finman.model.enums.LoanStatus;
+import com.finman.model.enums.TransactionType;
+import com.finman.repository.LoanInstallmentRepository;
+import com.finman.repository.LoanRepository;
+import com.finman.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Desembolso do empréstimo: muda o status, grava o cronograma de parcelas e a transação
+ * de DISBURSEMENT numa única transação. As parcelas usam sequência com pool e os INSERTs
+ * saem em batch JDBC (hibernate.jdbc.batch_size), em vez de um round trip por parcela.
+ *
+ * O empréstimo é lido com lock de escrita: dois desembolsos simultâneos do mesmo empréstimo
+ * se enfileiram, e o segundo já vê o status DISBURSED e é recusado, em vez de gerar um
+ * segundo cronograma.
+ */
+@Service
+public class LoanDisbursementService {
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LoanInstallmentRepository installmentRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AmortizationEngine amortizationEngine;
+
+    @Autowired
+    private InstallmentDueIndex installmentDueIndex;
+
+    @Autowired
+    private PortfolioCounters portfolioCounters;
+
+    /**
+     * @return o empréstimo desembolsado, ou vazio se não existir
+     * @throws IllegalStateException se o empréstimo já foi desembolsado, cancelado ou rejeitado
+     */
+    @Transactional
+    public Optional<Loan> disburse(Long loanId) {
+        Optional<Loan> loanOpt = loanRepository.findByIdForUpdate(loanId);
+        if (loanOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Loan loan = loanOpt.get();
+        if (loan.getStatus() != LoanStatus.PENDING && loan.getStatus() != LoanStatus.APPROVED) {
+            throw new IllegalStateException("Empréstimo não pode ser desembolsado no status " + loan.getStatus());
+        }
+
+        LoanStatus previousStatus = loan.getStatus();
+        loan.disburse();
+        portfolioCounters.loanChanged(previousStatus, loan.getLoanAmount(), loan.getStatus(), loan.getLoanAmount());
+
+        List<LoanInstallment> installments = amortizationEngine.compute(loan).toInstallments(loan);
+        installmentRepository.saveAll(installments);
+        installmentDueIndex.installmentsCreated(installments);
+
+        Transaction disbursement = new Transaction(loan, loan.getUser(), TransactionType.DISBURSEMENT,
+                loan.getLoanAmount(), "Desembolso do empréstimo #" + loan.getId());
+        transactionRepository.save(disbursement);
+
+        return Optional.of(loanRepository.save(loan));
+    }
+}
@@ -0,0 +1,229 @@
+package com.finman.service;
+
+import com.finman.dto.LoanPaymentAllocationResponse;
+import com.finman.model.Loan;
+import com.finman.model.LoanInstallment;
+import com.finman.model.Transaction;
+import com.finman.model.User;
+import com.finman.model.enums.LoanStatus;
+import com.finman.model.enums.TransactionType;
+import com.finman.repository.LoanInstallmentRepository;
+import com.finman.repository.LoanRepository;
+import com.finman.repository.TransactionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Aplica pagamentos de parcelas com UPDATEs condicionais (paid_amount = paid_amount + ?),
+ * sem ler-modificar-gravar: pagamentos simultâneos na mesma parcela não se perdem e os
+ * locks de linha duram só a transação curta. Parcela, empréstimo e a transação de
+ * PAYMENT são gravados juntos.
+ *
+ * Pagamentos do empréstimo como um todo são rateados entre as parcelas em aberto,
+ * da mais antiga para a mais nova, com uma consulta ordenada e um UPDATE em batch. Parcelas
+ * em aberto que já têm o valor todo pago (ex.: pagamento a maior gravado sem quitar) são
+ * quitadas no mesmo batch, com valor zero; sem isso o empréstimo nunca passaria a PAID.
+ *
+ * Todos os caminhos de pagamento (parcela, rateio e importação) travam primeiro a linha do
+ * empréstimo e só depois atualizam parcelas: com a mesma ordem de locks, pagamentos
+ * simultâneos no mesmo empréstimo esperam um pelo outro em vez de entrar em deadlock.
+ */
+@Service
+public class LoanPaymentService {
+
+    // SQL dos pagamentos em batch (rateio por empréstimo e importação de arquivos)
+    static final String APPLY_INSTALLMENT_SQL =
+            "UPDATE loan_installments SET paid_amount = paid_amount + ?, " +
+            "is_paid = CASE WHEN paid_amount + ? >= total_due_amount THEN TRUE ELSE FALSE END, " +
+            "paid_at = CASE WHEN paid_amount + ? >= total_due_amount THEN ? ELSE paid_at END, " +
+            "updated_at = ? WHERE id = ? AND is_paid = FALSE";
+
+    static final String APPLY_LOAN_SQL =
+            "UPDATE loans SET total_paid_amount = total_paid_amount + ?, " +
+            "outstanding_balance = CASE WHEN outstanding_balance > ? THEN outstanding_balance - ? ELSE 0 END, " +
+            "updated_at = ? WHERE id = ?";
+
+    static final String MARK_LOAN_PAID_SQL =
+            "UPDATE loans SET status = 'PAID', updated_at = ? WHERE id = ? AND status = 'ACTIVE' " +
+            "AND NOT EXISTS (SELECT 1 FROM loan_installments WHERE loan_id = ? AND is_paid = FALSE)";
+
+    @Autowired
+    private LoanInstallmentRepository installmentRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InstallmentDueIndex installmentDueIndex;
+
+    @Autowired
+    private PortfolioCounters portfolioCounters;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @return a parcela atualizada, ou vazio se não existir
+     * @throws IllegalArgumentException se o valor não for positivo ou tiver mais de 2 casas decimais
+     * @throws IllegalStateException se a parcela já estiver paga
+     */
+    @Transactional
+    public Optional<LoanInstallment> payInstallment(Long installmentId, BigDecimal amount) {
+        validateAmount(amount);
+
+        Optional<LoanInstallmentRepository.PaymentTarget> targetOpt = installmentRepository.findPaymentTarget(installmentId);
+        if (targetOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        loanRepository.findByIdForUpdate(targetOpt.get().getLoanId());
+
+        LocalDateTime now = LocalDateTime.now();
+        if (installmentRepository.applyPayment(installmentId, amount, now) == 0) {
+            throw new IllegalStateException("Parcela já está paga");
+        }
+
+        // Relido depois do UPDATE: indica se esta parcela acabou de ser quitada
+        LoanInstallmentRepository.PaymentTarget target = installmentRepository.findPaymentTarget(installmentId).orElseThrow();
+        loanRepository.applyPayment(target.getLoanId(), amount, now);
+        if (Boolean.TRUE.equals(target.getPaid())) {
+            // Esta parcela acabou de ser quitada: se era a última, o empréstimo fica PAID
+            if (loanRepository.markPaidIfSettled(target.getLoanId(), now) > 0) {
+                BigDecimal loanAmount = loanRepository.findById(target.getLoanId()).orElseThrow().getLoanAmount();
+                portfolioCounters.loanChanged(LoanStatus.ACTIVE, loanAmount, LoanStatus.PAID, loanAmount);
+            }
+            installmentDueIndex.installmentsRemoved(List.of(installmentId));
+            portfolioCounters.installmentsPaid(1);
+        }
+
+        LoanInstallment installment = installmentRepository.findById(installmentId).orElseThrow();
+        Transaction payment = new Transaction(entityManager.getReference(Loan.class, target.getLoanId()),
+                entityManager.getReference(User.class, target.getUserId()), installment,
+                TransactionType.PAYMENT, amount, "Pagamento da parcela #" + installment.getInstallmentNumber());
+        transactionRepository.save(payment);
+
+        return Optional.of(installment);
+    }
+
+    /**
+     * Rateia {@code amount} entre as parcelas em aberto do empréstimo, vencimento mais antigo
+     * primeiro, gerando uma transação de PAYMENT por parcela atingida.
+     *
+     * @return o rateio aplicado, ou vazio se o empréstimo não existir
+     * @throws IllegalArgumentException se o valor não for positivo, tiver mais de 2 casas decimais ou exceder o saldo das parcelas
+     * @throws IllegalStateException se o empréstimo não estiver ativo
+     */
+    @Transactional
+    public Optional<LoanPaymentAllocationResponse> payLoan(Long loanId, BigDecimal amount) {
+        validateAmount(amount);
+
+        // Lock no empréstimo: dois rateios simultâneos não disputam as mesmas parcelas
+        Optional<Loan> loanOpt = loanRepository.findByIdForUpdate(loanId);
+        if (loanOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        Loan loan = loanOpt.get();
+        if (loan.getStatus() != LoanStatus.ACTIVE) {
+            throw new IllegalStateException("Empréstimo não está ativo");
+        }
+
+        List<LoanInstallmentRepository.OpenInstallment> open = installmentRepository.findOpenInstallmentsForAllocation(loanId);
+        List<LoanPaymentAllocationResponse.Allocation> allocations = new ArrayList<>();
+        List<Long> coveredIds = new ArrayList<>();
+        BigDecimal remaining = amount;
+        for (LoanInstallmentRepository.OpenInstallment installment : open) {
+            BigDecimal balance = installment.getTotalDueAmount().subtract(installment.getPaidAmount());
+            if (balance.signum() <= 0) {
+                coveredIds.add(installment.getInstallmentId());
+                continue;
+            }
+            if (remaining.signum() <= 0) {
+                continue;
+            }
+            BigDecimal allocated = remaining.min(balance);
+            allocations.add(new LoanPaymentAllocationResponse.Allocation(installment.getInstallmentId(),
+                    installment.getInstallmentNumber(), allocated, allocated.compareTo(balance) == 0));
+            remaining = remaining.subtract(allocated);
+        }
+        if (remaining.signum() > 0) {
+            throw new IllegalArgumentException("Valor do pagamento excede o saldo das parcelas em aberto");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp nowTimestamp = Timestamp.valueOf(now);
+        List<Object[]> installmentArgs = new ArrayList<>(coveredIds.size() + allocations.size());
+        // Já cobertas: valor zero, o UPDATE só marca is_paid e paid_at
+        for (Long installmentId : coveredIds) {
+            installmentArgs.add(new Object[]{BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO,
+                    nowTimestamp, nowTimestamp, installmentId});
+        }
+        for (LoanPaymentAllocationResponse.Allocation allocation : allocations) {
+            installmentArgs.add(new Object[]{allocation.getAmount(), allocation.getAmount(), allocation.getAmount(),
+                    nowTimestamp, nowTimestamp, allocation.getInstallmentId()});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(APPLY_INSTALLMENT_SQL, installmentArgs);
+        for (int count : updated) {
+            if (count == 0) {
+                // Parcela quitada por um /pay concorrente depois da leitura: desfaz tudo
+                throw new IllegalStateException("Parcelas do empréstimo foram alteradas durante o pagamento");
+            }
+        }
+
+        jdbcTemplate.update(APPLY_LOAN_SQL, amount, amount, amount, nowTimestamp, loanId);
+        if (allocations.get(allocations.size() - 1).isSettled() || !coveredIds.isEmpty()) {
+            if (jdbcTemplate.update(MARK_LOAN_PAID_SQL, nowTimestamp, loanId, loanId) > 0) {
+                portfolioCounters.loanChanged(LoanStatus.ACTIVE, loan.getLoanAmount(), LoanStatus.PAID, loan.getLoanAmount());
+            }
+        }
+
+        List<Long> settledIds = new ArrayList<>(coveredIds);
+        for (LoanPaymentAllocationResponse.Allocation allocation : allocations) {
+            if (allocation.isSettled()) {
+                settledIds.add(allocation.getInstallmentId());
+            }
+        }
+        installmentDueIndex.installmentsRemoved(settledIds);
+        portfolioCounters.installmentsPaid(settledIds.size());
+
+        List<Transaction> payments = new ArrayList<>(allocations.size());
+        for (LoanPaymentAllocationResponse.Allocation allocation : allocations) {
+            payments.add(new Transaction(loan, loan.getUser(),
+                    entityManager.getReference(LoanInstallment.class, allocation.getInstallmentId()),
+                    TransactionType.PAYMENT, allocation.getAmount(),
+                    "Pagamento da parcela #" + allocation.getInstallmentNumber()));
+        }
+        transactionRepository.saveAll(payments);
+
+        // Os UPDATEs via JDBC não passam pelo contexto de persistência
+        entityManager.flush();
+        entityManager.refresh(loan);
+        return Optional.of(new LoanPaymentAllocationResponse(loanId, amount, loan.getStatus(), allocations));
+    }
+
+    // Mesma regra da importação de pagamentos: positivo e em centavos (10.50, 10.500, não 10.505)
+    static boolean isValidAmount(BigDecimal amount) {
+        return amount != null && amount.signum() > 0 && amount.stripTrailingZeros().scale() <= 2;
+    }
+
+    private static void validateAmount(BigDecimal amount) {
+        if (!isValidAmount(amount)) {
+            throw new IllegalArgumentException("Valor do pagamento deve ser positivo e ter no máximo 2 casas");
+        }
+    }
+}
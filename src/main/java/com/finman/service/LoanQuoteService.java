@@ -0,0 +1,250 @@
+package com.finman.service;
+
+import com.finman.dto.CreateLoanRequest;
+import com.finman.dto.LoanQuoteGridRequest;
+import com.finman.dto.LoanQuoteGridResponse;
+import com.finman.dto.LoanQuoteResponse;
+import com.finman.model.enums.PaymentFrequency;
+import com.finman.model.enums.PaymentType;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Cotação de empréstimos sem acesso ao banco. As respostas ficam num cache LRU, já que os
+ * quiosques repetem as mesmas simulações o dia todo. O cache é limitado pela quantidade de
+ * entradas e pelo total de parcelas guardadas, que é o que pesa na memória: uma cotação de
+ * 1200 parcelas ocupa tanto quanto centenas de cotações curtas.
+ *
+ * O prazo é limitado a app.loan.max-term parcelas, o mesmo limite da criação de empréstimos,
+ * para que um pedido não aloque um cronograma arbitrariamente grande.
+ */
+@Service
+public class LoanQuoteService {
+
+    @Autowired
+    private AmortizationEngine amortizationEngine;
+
+    private final Map<QuoteKey, LoanQuoteResponse> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Parcelas somadas de todas as cotações em cache
+    private long cachedInstallments;
+
+    @Value("${app.loan.quote.cache-size:1000}")
+    private int cacheSize;
+
+    @Value("${app.loan.quote.cache-max-installments:100000}")
+    private long cacheMaxInstallments;
+
+    @Value("${app.loan.max-term:1200}")
+    private int maxTermValue;
+
+    @Value("${app.loan.quote.grid-max-cells:2500}")
+    private int gridMaxCells;
+
+    // Parcelas somadas de todos os cronogramas de uma grade com includeSchedules
+    @Value("${app.loan.quote.grid-max-installments:100000}")
+    private long gridMaxInstallments;
+
+    // Pool próprio da grade: grades grandes não ocupam o ForkJoinPool comum do processo
+    private final ForkJoinPool gridPool;
+
+    public LoanQuoteService(@Value("${app.loan.quote.grid-threads:0}") int gridThreads) {
+        this.gridPool = new ForkJoinPool(gridThreads > 0 ? gridThreads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        gridPool.shutdownNow();
+    }
+
+    public int getMaxTermValue() {
+        return maxTermValue;
+    }
+
+    public boolean isValidTerm(Integer termValue) {
+        return termValue != null && termValue > 0 && termValue <= maxTermValue;
+    }
+
+    /**
+     * Valida se o pedido tem todos os dados necessários para a simulação.
+     */
+    public boolean isQuotable(CreateLoanRequest request) {
+        return request.getLoanAmount() != null && request.getLoanAmount().signum() > 0
+                && request.getInterestRate() != null && request.getInterestRate().signum() >= 0
+                && isValidTerm(request.getTermValue())
+                && request.getPaymentFrequency() != null
+                && AmortizationEngine.isValidAlternateDaysInterval(request.getPaymentFrequency(),
+                        request.getAlternateDaysInterval())
+                && request.getStartDate() != null;
+    }
+
+    public LoanQuoteResponse quote(CreateLoanRequest request) {
+        PaymentType paymentType = request.getPaymentType() != null ? request.getPaymentType() : PaymentType.FIXED_INSTALLMENTS;
+        QuoteKey key = new QuoteKey(AmortizationEngine.toCents(request.getLoanAmount()),
+                normalizeRate(request.getInterestRate()), request.getTermValue(),
+                request.getPaymentFrequency(), paymentType, request.getAlternateDaysInterval(), request.getStartDate());
+
+        LoanQuoteResponse cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            return cached;
+        }
+
+        // Calculado fora do lock; duas requisições simultâneas iguais geram o mesmo resultado
+        LoanQuoteResponse response = buildResponse(key);
+        synchronized (cache) {
+            LoanQuoteResponse previous = cache.put(key, response);
+            if (previous != null) {
+                cachedInstallments -= previous.getInstallments().size();
+            }
+            cachedInstallments += response.getInstallments().size();
+            evict();
+        }
+        return response;
+    }
+
+    /**
+     * Valida o pedido de grade: valor, listas não vazias de prazos e taxas válidos e,
+     * se os cronogramas completos forem pedidos, frequência, data de início e o total de
+     * parcelas da grade.
+     */
+    public boolean isQuotable(LoanQuoteGridRequest request) {
+        if (request.getLoanAmount() == null || request.getLoanAmount().signum() <= 0
+                || request.getTermValues() == null || request.getTermValues().isEmpty()
+                || request.getInterestRates() == null || request.getInterestRates().isEmpty()
+                || (long) request.getTermValues().size() * request.getInterestRates().size() > gridMaxCells
+                || !AmortizationEngine.isValidAlternateDaysInterval(request.getPaymentFrequency(),
+                        request.getAlternateDaysInterval())) {
+            return false;
+        }
+        long totalInstallments = 0;
+        for (Integer termValue : request.getTermValues()) {
+            if (!isValidTerm(termValue)) {
+                return false;
+            }
+            totalInstallments += termValue;
+        }
+        for (BigDecimal interestRate : request.getInterestRates()) {
+            if (interestRate == null || interestRate.signum() < 0) {
+                return false;
+            }
+        }
+        return !request.isIncludeSchedules()
+                || (request.getPaymentFrequency() != null && request.getStartDate() != null
+                    && totalInstallments * request.getInterestRates().size() <= gridMaxInstallments);
+    }
+
+    /**
+     * Calcula a grade prazo x taxa em paralelo, no pool da grade. Por padrão só o resumo de cada célula
+     * é calculado; os cronogramas completos passam pelo cache de cotações.
+     */
+    public LoanQuoteGridResponse quoteGrid(LoanQuoteGridRequest request) {
+        PaymentType paymentType = request.getPaymentType() != null ? request.getPaymentType() : PaymentType.FIXED_INSTALLMENTS;
+        List<Integer> termValues = List.copyOf(request.getTermValues());
+        List<BigDecimal> interestRates = List.copyOf(request.getInterestRates());
+        int columns = interestRates.size();
+
+        LoanQuoteGridResponse.GridCell[] cells = new LoanQuoteGridResponse.GridCell[termValues.size() * columns];
+        gridPool.submit(() -> IntStream.range(0, cells.length).parallel().forEach(index -> {
+            int termValue = termValues.get(index / columns);
+            BigDecimal interestRate = interestRates.get(index % columns);
+            cells[index] = buildGridCell(request, paymentType, termValue, interestRate);
+        })).join();
+
+        List<LoanQuoteGridResponse.GridCell> allCells = Arrays.asList(cells);
+        List<List<LoanQuoteGridResponse.GridCell>> rows = new ArrayList<>(termValues.size());
+        for (int row = 0; row < termValues.size(); row++) {
+            rows.add(allCells.subList(row * columns, (row + 1) * columns));
+        }
+        return new LoanQuoteGridResponse(request.getLoanAmount(), paymentType, termValues, interestRates, rows);
+    }
+
+    // Menos usadas primeiro, até caber nos dois limites
+    private void evict() {
+        Iterator<LoanQuoteResponse> iterator = cache.values().iterator();
+        while ((cache.size() > cacheSize || cachedInstallments > cacheMaxInstallments) && iterator.hasNext()) {
+            cachedInstallments -= iterator.next().getInstallments().size();
+            iterator.remove();
+        }
+    }
+
+    public int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private LoanQuoteGridResponse.GridCell buildGridCell(LoanQuoteGridRequest request, PaymentType paymentType,
+                                                         int termValue, BigDecimal interestRate) {
+        if (request.isIncludeSchedules()) {
+            CreateLoanRequest cellRequest = new CreateLoanRequest();
+            cellRequest.setLoanAmount(request.getLoanAmount());
+            cellRequest.setInterestRate(interestRate);
+            cellRequest.setTermValue(termValue);
+            cellRequest.setPaymentFrequency(request.getPaymentFrequency());
+            cellRequest.setPaymentType(paymentType);
+            cellRequest.setAlternateDaysInterval(request.getAlternateDaysInterval());
+            cellRequest.setStartDate(request.getStartDate());
+
+            LoanQuoteResponse quote = quote(cellRequest);
+            return new LoanQuoteGridResponse.GridCell(termValue, interestRate,
+                    quote.getInstallments().get(0).getTotalDueAmount(), quote.getTotalInterest(),
+                    quote.getTotalDue(), quote.getInstallments());
+        }
+
+        AmortizationSummary summary = amortizationEngine.summarize(request.getLoanAmount(), interestRate,
+                termValue, paymentType);
+        return new LoanQuoteGridResponse.GridCell(termValue, interestRate, summary.getFirstInstallment(),
+                summary.getTotalInterest(), summary.getTotalDue(), null);
+    }
+
+    /**
+     * Monta a cotação só a partir da chave: a resposta fica no cache e é servida a todos os
+     * pedidos com a mesma chave, então valor e taxa ecoados são os normalizados (centavos e
+     * taxa sem zeros à direita), não os do pedido que calculou a entrada.
+     */
+    private LoanQuoteResponse buildResponse(QuoteKey key) {
+        BigDecimal loanAmount = BigDecimal.valueOf(key.amountCents(), 2);
+        AmortizationSchedule schedule = amortizationEngine.compute(loanAmount, key.interestRate(),
+                key.termValue(), key.paymentFrequency(), key.paymentType(),
+                key.alternateDaysInterval(), key.startDate());
+
+        List<LoanQuoteResponse.InstallmentQuote> installments = new ArrayList<>(schedule.size());
+        for (int i = 0; i < schedule.size(); i++) {
+            installments.add(new LoanQuoteResponse.InstallmentQuote(i + 1, schedule.getDueDate(i),
+                    schedule.getPrincipalAmount(i), schedule.getInterestAmount(i), schedule.getTotalDueAmount(i)));
+        }
+
+        return new LoanQuoteResponse(loanAmount, key.interestRate(), key.termValue(),
+                key.paymentFrequency(), key.paymentType(), key.alternateDaysInterval(),
+                key.startDate(), schedule.getDueDate(schedule.size() - 1),
+                BigDecimal.valueOf(schedule.getTotalInterestCents(), 2),
+                BigDecimal.valueOf(schedule.getTotalDueCents(), 2), installments);
+    }
+
+    // Sem zeros à direita e sem notação científica (0.0200 -> 0.02, 10 -> 10, não 1E+1)
+    private static BigDecimal normalizeRate(BigDecimal interestRate) {
+        BigDecimal stripped = interestRate.stripTrailingZeros();
+        return stripped.scale() < 0 ? stripped.setScale(0) : stripped;
+    }
+
+    private record QuoteKey(long amountCents, BigDecimal interestRate, int termValue,
+                            PaymentFrequency paymentFrequency, PaymentType paymentType,
+                            Integer alternateDaysInterval, LocalDate startDate) {
+    }
+}
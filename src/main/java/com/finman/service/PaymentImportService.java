@@ -0,0 +1,433 @@
+package com.finman.service;
+
+import com.finman.model.Loan;
+import com.finman.model.LoanInstallment;
+import com.finman.model.Transaction;
+import com.finman.model.User;
+import com.finman.model.enums.LoanStatus;
+import com.finman.model.enums.TransactionType;
+import com.finman.repository.LoanInstallmentRepository;
+import com.finman.repository.LoanRepository;
+import com.finman.repository.TransactionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Importação de arquivos de pagamento dos cobradores.
+ *
+ * O CSV é lido linha a linha (nunca inteiro em memória) e aplicado em lotes: cada lote é
+ * uma transação com UPDATEs condicionais em batch JDBC nas parcelas e nos empréstimos, e
+ * as transações de PAYMENT saem no batch do Hibernate. O relatório é escrito lote a lote.
+ * Se o lote falhar, suas linhas são reaplicadas uma a uma, cada uma na sua transação, para
+ * que só as linhas com problema sejam rejeitadas (com o erro delas).
+ *
+ * Formato: installmentId,loanId,amount,paidDate,externalReference — apenas um dos ids é
+ * informado; pagamentos por empréstimo vão para a parcela em aberto mais antiga.
+ */
+@Service
+public class PaymentImportService {
+
+    private static final String HEADER_PREFIX = "installmentId";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LoanInstallmentRepository installmentRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private InstallmentDueIndex installmentDueIndex;
+
+    @Autowired
+    private PortfolioCounters portfolioCounters;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.payment.import.chunk-size:1000}")
+    private int chunkSize;
+
+    public PaymentImportService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Lê o CSV de {@code source}, aplica os pagamentos e escreve em {@code report} uma linha
+     * de resultado por linha do arquivo, seguida de uma linha de totais.
+     */
+    public ImportSummary importPayments(Reader source, Writer report) throws IOException {
+        long startedAt = System.nanoTime();
+        ImportSummary summary = new ImportSummary();
+        report.write("line,status,installmentId,message\n");
+
+        BufferedReader reader = new BufferedReader(source);
+        List<PaymentLine> chunk = new ArrayList<>(chunkSize);
+        Set<Long> chunkLoanIds = new HashSet<>();
+        String text;
+        int lineNumber = 0;
+        while ((text = reader.readLine()) != null) {
+            lineNumber++;
+            if (text.isBlank() || (lineNumber == 1 && text.startsWith(HEADER_PREFIX))) {
+                continue;
+            }
+
+            PaymentLine line = parse(lineNumber, text);
+            // Dois pagamentos do mesmo empréstimo no lote resolveriam para a mesma parcela
+            if (line.loanId != null && !chunkLoanIds.add(line.loanId)) {
+                flush(chunk, summary, report);
+                chunkLoanIds.clear();
+                chunkLoanIds.add(line.loanId);
+            }
+            chunk.add(line);
+            if (chunk.size() >= chunkSize) {
+                flush(chunk, summary, report);
+                chunkLoanIds.clear();
+            }
+        }
+        flush(chunk, summary, report);
+
+        summary.elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        report.write("# total=" + summary.total + ",accepted=" + summary.accepted + ",rejected=" + summary.rejected
+                + ",elapsedMs=" + summary.elapsedMillis + ",linesPerSecond=" + summary.getLinesPerSecond() + "\n");
+        report.flush();
+        return summary;
+    }
+
+    private void flush(List<PaymentLine> chunk, ImportSummary summary, Writer report) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        List<PaymentLine> valid = new ArrayList<>(chunk.size());
+        for (PaymentLine line : chunk) {
+            if (line.isPending()) {
+                valid.add(line);
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> applyChunk(chunk));
+        } catch (RuntimeException e) {
+            // Lote inteiro foi revertido: as linhas válidas voltam ao estado do parse e são
+            // aplicadas isoladamente, para rejeitar só as que falham
+            for (PaymentLine line : valid) {
+                line.reset();
+            }
+            for (PaymentLine line : valid) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> applyChunk(List.of(line)));
+                } catch (RuntimeException lineError) {
+                    line.reset();
+                    line.reject("Erro ao aplicar: " + NestedExceptionUtils.getMostSpecificCause(lineError).getMessage());
+                }
+            }
+        }
+
+        for (PaymentLine line : chunk) {
+            summary.total++;
+            if (line.accepted) {
+                summary.accepted++;
+            } else {
+                summary.rejected++;
+            }
+            report.write(line.lineNumber + "," + (line.accepted ? "ACCEPTED" : "REJECTED") + ","
+                    + (line.installmentId != null ? line.installmentId : "") + ","
+                    + (line.message != null ? csvField(line.message) : "") + "\n");
+        }
+        report.flush();
+        chunk.clear();
+    }
+
+    private void applyChunk(List<PaymentLine> chunk) {
+        LocalDateTime now = LocalDateTime.now();
+
+        // 1. Empréstimo e cliente das linhas por parcela
+        Set<Long> installmentIds = new HashSet<>();
+        for (PaymentLine line : chunk) {
+            if (line.isPending() && line.installmentId != null) {
+                installmentIds.add(line.installmentId);
+            }
+        }
+        Map<Long, LoanInstallmentRepository.PaymentTarget> targets = new HashMap<>();
+        if (!installmentIds.isEmpty()) {
+            for (LoanInstallmentRepository.PaymentTarget target : installmentRepository.findPaymentTargets(installmentIds)) {
+                targets.put(target.getInstallmentId(), target);
+            }
+        }
+
+        // 2. Lock dos empréstimos do lote (em ordem de id) antes de tocar em qualquer parcela,
+        // na mesma ordem dos pagamentos avulsos (ver LoanPaymentService)
+        Set<Long> loanIds = new HashSet<>();
+        for (PaymentLine line : chunk) {
+            if (!line.isPending()) {
+                continue;
+            }
+            if (line.loanId != null) {
+                loanIds.add(line.loanId);
+            } else if (targets.containsKey(line.installmentId)) {
+                loanIds.add(targets.get(line.installmentId).getLoanId());
+            }
+        }
+        if (!loanIds.isEmpty()) {
+            loanRepository.findAllByIdForUpdate(loanIds);
+        }
+
+        // 3. Pagamentos por empréstimo: parcela em aberto mais antiga, lida já com o empréstimo travado
+        Set<Long> byLoanIds = new HashSet<>();
+        for (PaymentLine line : chunk) {
+            if (line.isPending() && line.loanId != null) {
+                byLoanIds.add(line.loanId);
+            }
+        }
+        if (!byLoanIds.isEmpty()) {
+            Map<Long, LoanInstallmentRepository.PaymentTarget> oldestByLoan = new HashMap<>();
+            for (LoanInstallmentRepository.PaymentTarget target : installmentRepository.findOldestUnpaidByLoanIds(byLoanIds)) {
+                oldestByLoan.put(target.getLoanId(), target);
+            }
+            for (PaymentLine line : chunk) {
+                LoanInstallmentRepository.PaymentTarget target = line.isPending() && line.loanId != null
+                        ? oldestByLoan.get(line.loanId) : null;
+                if (target != null) {
+                    line.installmentId = target.getInstallmentId();
+                    targets.put(target.getInstallmentId(), target);
+                }
+            }
+        }
+
+        List<PaymentLine> pending = new ArrayList<>(chunk.size());
+        for (PaymentLine line : chunk) {
+            if (!line.isPending()) {
+                continue;
+            }
+            if (line.installmentId == null) {
+                line.reject("Empréstimo não encontrado ou sem parcelas em aberto");
+                continue;
+            }
+            LoanInstallmentRepository.PaymentTarget target = targets.get(line.installmentId);
+            if (target == null) {
+                line.reject("Parcela não encontrada");
+            } else {
+                line.target = target;
+                pending.add(line);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // 4. Parcelas: um UPDATE condicional por linha, num único batch (executado em ordem)
+        Timestamp nowTimestamp = Timestamp.valueOf(now);
+        List<Object[]> installmentArgs = new ArrayList<>(pending.size());
+        for (PaymentLine line : pending) {
+            installmentArgs.add(new Object[]{line.amount, line.amount, line.amount,
+                    Timestamp.valueOf(line.paidDate.atStartOfDay()), nowTimestamp, line.installmentId});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(LoanPaymentService.APPLY_INSTALLMENT_SQL, installmentArgs);
+
+        Map<Long, BigDecimal> paidByLoan = new LinkedHashMap<>();
+        List<Long> appliedInstallmentIds = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            PaymentLine line = pending.get(i);
+            if (updated[i] == 0) {
+                line.reject("Parcela já está paga");
+                continue;
+            }
+            line.accepted = true;
+            paidByLoan.merge(line.target.getLoanId(), line.amount, BigDecimal::add);
+            appliedInstallmentIds.add(line.installmentId);
+        }
+        if (paidByLoan.isEmpty()) {
+            return;
+        }
+
+        // 5. Empréstimos: um UPDATE por empréstimo com a soma do lote
+        List<Object[]> loanArgs = new ArrayList<>(paidByLoan.size());
+        for (Map.Entry<Long, BigDecimal> entry : paidByLoan.entrySet()) {
+            loanArgs.add(new Object[]{entry.getValue(), entry.getValue(), entry.getValue(), nowTimestamp, entry.getKey()});
+        }
+        jdbcTemplate.batchUpdate(LoanPaymentService.APPLY_LOAN_SQL, loanArgs);
+
+        // 6. Empréstimos com parcela quitada neste lote podem ter terminado
+        Set<Long> settledLoanIds = new HashSet<>();
+        Set<Long> paidIds = new HashSet<>(installmentRepository.findPaidIds(appliedInstallmentIds));
+        installmentDueIndex.installmentsRemoved(paidIds);
+        portfolioCounters.installmentsPaid(paidIds.size());
+        for (PaymentLine line : pending) {
+            if (line.accepted && paidIds.contains(line.installmentId)) {
+                settledLoanIds.add(line.target.getLoanId());
+            }
+        }
+        if (!settledLoanIds.isEmpty()) {
+            List<Long> settledLoans = new ArrayList<>(settledLoanIds);
+            List<Object[]> settledArgs = new ArrayList<>(settledLoans.size());
+            for (Long loanId : settledLoans) {
+                settledArgs.add(new Object[]{nowTimestamp, loanId, loanId});
+            }
+            int[] markedPaid = jdbcTemplate.batchUpdate(LoanPaymentService.MARK_LOAN_PAID_SQL, settledArgs);
+            List<Long> paidLoanIds = new ArrayList<>();
+            for (int i = 0; i < markedPaid.length; i++) {
+                if (markedPaid[i] > 0) {
+                    paidLoanIds.add(settledLoans.get(i));
+                }
+            }
+            if (!paidLoanIds.isEmpty()) {
+                for (Loan loan : loanRepository.findAllById(paidLoanIds)) {
+                    portfolioCounters.loanChanged(LoanStatus.ACTIVE, loan.getLoanAmount(), LoanStatus.PAID, loan.getLoanAmount());
+                }
+            }
+        }
+
+        // 7. Transações de PAYMENT (INSERTs em batch pelo Hibernate no commit)
+        for (PaymentLine line : pending) {
+            if (!line.accepted) {
+                continue;
+            }
+            Transaction payment = new Transaction(entityManager.getReference(Loan.class, line.target.getLoanId()),
+                    entityManager.getReference(User.class, line.target.getUserId()),
+                    entityManager.getReference(LoanInstallment.class, line.installmentId),
+                    TransactionType.PAYMENT, line.amount,
+                    "Pagamento importado" + (line.externalReference != null ? " (ref: " + line.externalReference + ")" : ""));
+            payment.setTransactionDate(line.paidDate.atStartOfDay());
+            transactionRepository.save(payment);
+        }
+
+        // Com open-in-view o contexto de persistência dura a requisição toda; sem limpar,
+        // cada flush revisaria as entidades de todos os lotes anteriores
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private PaymentLine parse(int lineNumber, String text) {
+        PaymentLine line = new PaymentLine(lineNumber);
+        String[] fields = text.split(",", 5);
+        if (fields.length < 3) {
+            return line.reject("Linha com colunas insuficientes");
+        }
+
+        try {
+            line.installmentId = parseId(fields[0]);
+            line.loanId = parseId(fields[1]);
+            line.amount = new BigDecimal(fields[2].trim());
+            line.paidDate = fields.length > 3 && !fields[3].isBlank() ? LocalDate.parse(fields[3].trim()) : LocalDate.now();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return line.reject("Valor inválido: " + e.getMessage());
+        }
+        if (fields.length > 4 && !fields[4].isBlank()) {
+            line.externalReference = fields[4].trim();
+        }
+
+        if ((line.installmentId == null) == (line.loanId == null)) {
+            return line.reject("Informe installmentId ou loanId (apenas um)");
+        }
+        if (!LoanPaymentService.isValidAmount(line.amount)) {
+            return line.reject("Valor do pagamento deve ser positivo e ter no máximo 2 casas");
+        }
+        return line;
+    }
+
+    // Campo em uma linha só, entre aspas (RFC 4180) quando tiver vírgula ou aspas
+    private static String csvField(String value) {
+        String singleLine = value.replaceAll("\\s*[\\r\\n]+\\s*", " ").trim();
+        if (singleLine.indexOf(',') < 0 && singleLine.indexOf('"') < 0) {
+            return singleLine;
+        }
+        return '"' + singleLine.replace("\"", "\"\"") + '"';
+    }
+
+    private static Long parseId(String field) {
+        return field.isBlank() ? null : Long.valueOf(field.trim());
+    }
+
+    private static final class PaymentLine {
+        private final int lineNumber;
+        private Long installmentId;
+        private Long loanId;
+        private BigDecimal amount;
+        private LocalDate paidDate;
+        private String externalReference;
+        private LoanInstallmentRepository.PaymentTarget target;
+        private boolean accepted;
+        private String message;
+
+        PaymentLine(int lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+
+        boolean isPending() {
+            return message == null && !accepted;
+        }
+
+        // Desfaz o que a aplicação de um lote revertido deixou na linha
+        void reset() {
+            if (loanId != null) {
+                installmentId = null;
+            }
+            target = null;
+            accepted = false;
+            message = null;
+        }
+
+        PaymentLine reject(String message) {
+            this.message = message;
+            return this;
+        }
+    }
+
+    public static final class ImportSummary {
+        private long total;
+        private long accepted;
+        private long rejected;
+        private long elapsedMillis;
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public long getLinesPerSecond() {
+            return elapsedMillis > 0 ? total * 1000 / elapsedMillis : total;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.finman.service;
+
+import com.finman.model.enums.LoanStatus;
+import com.finman.repository.DocumentRepository;
+import com.finman.repository.LoanInstallmentRepository;
+import com.finman.repository.LoanRepository;
+import com.finman.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores da carteira mantidos em memória para o dashboard: empréstimos e valores por
+ * status, parcelas pagas, clientes e documentos.
+ *
+ * Cada alteração soma um delta em {@link LongAdder}s (células por thread, sem disputa entre
+ * as requisições) após o commit da transação. Valores ficam em centavos. Uma reconciliação
+ * periódica com as consultas agregadas do banco corrige qualquer desvio, por exemplo de
+ * alterações feitas fora da aplicação.
+ */
+@Component
+public class PortfolioCounters {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private LoanInstallmentRepository loanInstallmentRepository;
+
+    private final Map<LoanStatus, LongAdder> loanCounts = new EnumMap<>(LoanStatus.class);
+    private final Map<LoanStatus, LongAdder> loanAmountCents = new EnumMap<>(LoanStatus.class);
+    private final LongAdder paidInstallments = new LongAdder();
+    private final LongAdder users = new LongAdder();
+    private final LongAdder documents = new LongAdder();
+
+    // Incrementada a cada alteração aplicada; quem observa compara para saber se algo mudou
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile boolean ready;
+
+    public PortfolioCounters() {
+        for (LoanStatus status : LoanStatus.values()) {
+            loanCounts.put(status, new LongAdder());
+            loanAmountCents.put(status, new LongAdder());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reconcile();
+    }
+
+    /**
+     * Acerta os contadores com o banco. Deltas aplicados durante a leitura podem ser
+     * contados duas vezes ou perdidos; a próxima reconciliação corrige.
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard.counters.reconcile-interval-ms:300000}",
+               initialDelayString = "${app.dashboard.counters.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        Map<LoanStatus, long[]> byStatus = new EnumMap<>(LoanStatus.class);
+        for (LoanRepository.StatusTotals totals : loanRepository.sumByStatus()) {
+            byStatus.put(totals.getStatus(), new long[]{totals.getLoanCount(), toCents(totals.getTotalAmount())});
+        }
+        long paid = loanInstallmentRepository.countByIsPaidTrue();
+        long userCount = userRepository.count();
+        long documentCount = documentRepository.count();
+
+        for (LoanStatus status : LoanStatus.values()) {
+            long[] totals = byStatus.getOrDefault(status, new long[2]);
+            resetTo(loanCounts.get(status), totals[0]);
+            resetTo(loanAmountCents.get(status), totals[1]);
+        }
+        resetTo(paidInstallments, paid);
+        resetTo(users, userCount);
+        resetTo(documents, documentCount);
+        ready = true;
+        version.incrementAndGet();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    // Leituras
+
+    public long getLoanCount(LoanStatus status) {
+        return loanCounts.get(status).sum();
+    }
+
+    public BigDecimal getLoanAmount(LoanStatus status) {
+        return BigDecimal.valueOf(loanAmountCents.get(status).sum(), 2);
+    }
+
+    public long getPaidInstallments() {
+        return paidInstallments.sum();
+    }
+
+    public long getUsers() {
+        return users.sum();
+    }
+
+    public long getDocuments() {
+        return documents.sum();
+    }
+
+    // Atualizações (após o commit)
+
+    /**
+     * Empréstimo criado, alterado, mudou de status ou foi removido. Status nulo indica
+     * que o empréstimo não existia antes (criação) ou deixou de existir (exclusão).
+     */
+    public void loanChanged(LoanStatus oldStatus, BigDecimal oldAmount, LoanStatus newStatus, BigDecimal newAmount) {
+        long oldCents = oldStatus != null ? toCents(oldAmount) : 0;
+        long newCents = newStatus != null ? toCents(newAmount) : 0;
+        if (oldStatus == newStatus && oldCents == newCents) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            if (oldStatus != null) {
+                loanCounts.get(oldStatus).decrement();
+                loanAmountCents.get(oldStatus).add(-oldCents);
+            }
+            if (newStatus != null) {
+                loanCounts.get(newStatus).increment();
+                loanAmountCents.get(newStatus).add(newCents);
+            }
+            version.incrementAndGet();
+        });
+    }
+
+    public void installmentsPaid(long count) {
+        addAfterCommit(paidInstallments, count);
+    }
+
+    public void usersChanged(long delta) {
+        addAfterCommit(users, delta);
+    }
+
+    public void documentsChanged(long delta) {
+        addAfterCommit(documents, delta);
+    }
+
+    private void addAfterCommit(LongAdder adder, long delta) {
+        if (delta != 0) {
+            AfterCommit.run(() -> {
+                adder.add(delta);
+                version.incrementAndGet();
+            });
+        }
+    }
+
+    private static void resetTo(LongAdder adder, long value) {
+        adder.add(value - adder.sum());
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount != null ? AmortizationEngine.toCents(amount) : 0;
+    }
+}
@@ -0,0 +1,476 @@
+package com.finman.service;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Backend compatível com S3 (AWS, MinIO, Ceph...), falando a API REST direto pelo
+ * HttpClient do JDK com assinatura AWS Signature V4, sem SDK.
+ *
+ * Arquivos maiores que o tamanho de parte sobem por multipart upload, com as partes
+ * enviadas em paralelo de forma assíncrona. Downloads são lidos em streaming do corpo da
+ * resposta, com Range quando começam no meio do arquivo.
+ *
+ * Toda requisição ocupa uma vaga de um limite de requisições em andamento; sem vaga dentro
+ * do tempo de espera, a operação falha com {@link DocumentStore.BusyException} em vez de
+ * prender a thread do servlet atrás de um armazenamento lento. Um download ocupa a vaga até
+ * o stream ser fechado.
+ */
+@Service
+@ConditionalOnProperty(name = "app.document.store.type", havingValue = "s3")
+public class S3DocumentStore implements DocumentStore {
+
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String SIGNED_HEADERS = "host;x-amz-content-sha256;x-amz-date";
+    private static final DateTimeFormatter AMZ_DATE =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    @Value("${app.document.store.s3.endpoint:http://localhost:9000}")
+    private String endpoint;
+
+    @Value("${app.document.store.s3.bucket:finman-documents}")
+    private String bucket;
+
+    @Value("${app.document.store.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${app.document.store.s3.access-key:}")
+    private String accessKey;
+
+    @Value("${app.document.store.s3.secret-key:}")
+    private String secretKey;
+
+    @Value("${app.document.store.s3.prefix:documents/}")
+    private String prefix;
+
+    // Mínimo do S3 é 5MB (exceto a última parte)
+    @Value("${app.document.store.s3.part-size:8MB}")
+    private DataSize partSize;
+
+    @Value("${app.document.store.s3.upload-concurrency:4}")
+    private int uploadConcurrency;
+
+    @Value("${app.document.store.s3.request-timeout-ms:30000}")
+    private long requestTimeoutMs;
+
+    @Value("${app.document.store.s3.acquire-timeout-ms:2000}")
+    private long acquireTimeoutMs;
+
+    private final Semaphore inFlight;
+
+    private final ExecutorService httpExecutor;
+
+    private final HttpClient httpClient;
+
+    public S3DocumentStore(@Value("${app.document.store.s3.max-in-flight:32}") int maxInFlight) {
+        this.inFlight = new Semaphore(maxInFlight);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.httpExecutor = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "document-store-s3-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(httpExecutor)
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        httpExecutor.shutdownNow();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        if (exists(key)) {
+            return;
+        }
+        long size = Files.size(source);
+        if (size <= partSize.toBytes()) {
+            HttpResponse<String> response = send(request("PUT", key, Map.of())
+                    .PUT(HttpRequest.BodyPublishers.ofFile(source)).build(), HttpResponse.BodyHandlers.ofString());
+            requireSuccess(response, "PUT");
+        } else {
+            multipartUpload(key, source, size);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return size(key) >= 0;
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        HttpResponse<Void> response = send(request("HEAD", key, Map.of())
+                .method("HEAD", HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return -1;
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("S3 HEAD " + key + ": HTTP " + response.statusCode());
+        }
+        return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        if (length == 0) {
+            return InputStream.nullInputStream();
+        }
+        HttpRequest.Builder builder = request("GET", key, Map.of()).GET();
+        if (offset > 0 || length > 0) {
+            builder.header("Range", "bytes=" + offset + "-" + (length > 0 ? String.valueOf(offset + length - 1) : ""));
+        }
+
+        acquire();
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            inFlight.release();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrompido: " + key);
+        } catch (IOException | RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+
+        int status = response.statusCode();
+        if (status / 100 != 2) {
+            String body;
+            try (InputStream error = response.body()) {
+                body = new String(error.readNBytes(512), StandardCharsets.UTF_8);
+            } finally {
+                inFlight.release();
+            }
+            if (status == 404) {
+                throw new NoSuchFileException(key);
+            }
+            if (status == 416) {
+                // Offset no fim do arquivo
+                return InputStream.nullInputStream();
+            }
+            throw new IOException("S3 GET " + key + ": HTTP " + status + " " + body);
+        }
+
+        // A vaga fica ocupada até quem lê fechar o stream
+        AtomicBoolean released = new AtomicBoolean();
+        return new FilterInputStream(response.body()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (released.compareAndSet(false, true)) {
+                        inFlight.release();
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<String> response = send(request("DELETE", key, Map.of()).DELETE().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 404) {
+            requireSuccess(response, "DELETE");
+        }
+    }
+
+    @Override
+    public void forEach(Visitor visitor) throws IOException {
+        String continuationToken = null;
+        do {
+            Map<String, String> query = new TreeMap<>();
+            query.put("list-type", "2");
+            query.put("prefix", prefix);
+            if (continuationToken != null) {
+                query.put("continuation-token", continuationToken);
+            }
+            HttpResponse<String> response = send(request("GET", null, query).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            requireSuccess(response, "LIST");
+
+            Element result = parseXml(response.body());
+            NodeList contents = result.getElementsByTagName("Contents");
+            for (int i = 0; i < contents.getLength(); i++) {
+                Element object = (Element) contents.item(i);
+                String name = childText(object, "Key").substring(prefix.length());
+                if (FileStorageService.isContentHash(name)) {
+                    visitor.visit(name, Long.parseLong(childText(object, "Size")), false);
+                }
+            }
+            continuationToken = "true".equals(childText(result, "IsTruncated"))
+                    ? childText(result, "NextContinuationToken") : null;
+        } while (continuationToken != null);
+    }
+
+    /**
+     * Multipart upload: as partes sobem em paralelo (até "upload-concurrency" por arquivo,
+     * dentro do limite geral de requisições), e o upload é abortado se alguma falhar para
+     * não deixar partes órfãs cobradas no bucket.
+     */
+    private void multipartUpload(String key, Path source, long size) throws IOException {
+        HttpResponse<String> created = send(request("POST", key, Map.of("uploads", ""))
+                .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+        requireSuccess(created, "CreateMultipartUpload");
+        String uploadId = childText(parseXml(created.body()), "UploadId");
+
+        try {
+            long partBytes = partSize.toBytes();
+            int partCount = (int) ((size + partBytes - 1) / partBytes);
+            Semaphore partSlots = new Semaphore(uploadConcurrency);
+            List<CompletableFuture<String>> etags = new ArrayList<>();
+            for (int part = 1; part <= partCount; part++) {
+                long offset = (part - 1) * partBytes;
+                long length = Math.min(partBytes, size - offset);
+                HttpRequest request = request("PUT", key,
+                        Map.of("partNumber", String.valueOf(part), "uploadId", uploadId))
+                        .PUT(HttpRequest.BodyPublishers.fromPublisher(
+                                HttpRequest.BodyPublishers.ofInputStream(() -> slice(source, offset, length)), length))
+                        .build();
+                acquire(partSlots);
+                etags.add(sendAsync(request).whenComplete((response, error) -> partSlots.release())
+                        .thenApply(response -> {
+                            if (response.statusCode() / 100 != 2) {
+                                throw new CompletionException(new IOException(
+                                        "S3 UploadPart " + key + ": HTTP " + response.statusCode()));
+                            }
+                            return response.headers().firstValue("ETag").orElseThrow();
+                        }));
+            }
+
+            StringBuilder complete = new StringBuilder("<CompleteMultipartUpload>");
+            for (int part = 1; part <= partCount; part++) {
+                complete.append("<Part><PartNumber>").append(part).append("</PartNumber><ETag>")
+                        .append(etags.get(part - 1).join()).append("</ETag></Part>");
+            }
+            complete.append("</CompleteMultipartUpload>");
+
+            HttpResponse<String> completed = send(request("POST", key, Map.of("uploadId", uploadId))
+                    .POST(HttpRequest.BodyPublishers.ofString(complete.toString())).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            requireSuccess(completed, "CompleteMultipartUpload");
+            // O S3 pode responder 200 com um erro no corpo
+            if (completed.body().contains("<Error>")) {
+                throw new IOException("S3 CompleteMultipartUpload " + key + ": " + completed.body());
+            }
+        } catch (IOException | RuntimeException e) {
+            abortQuietly(key, uploadId);
+            if (e instanceof CompletionException && e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void abortQuietly(String key, String uploadId) {
+        try {
+            send(request("DELETE", key, Map.of("uploadId", uploadId)).DELETE().build(),
+                    HttpResponse.BodyHandlers.discarding());
+        } catch (IOException | RuntimeException e) {
+            // Partes órfãs ficam para a regra de ciclo de vida do bucket
+        }
+    }
+
+    private static InputStream slice(Path source, long offset, long length) {
+        try {
+            InputStream in = Files.newInputStream(source);
+            in.skipNBytes(offset);
+            return new BoundedInputStream(in, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        acquire();
+        try {
+            return httpClient.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Requisição ao armazenamento interrompida");
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private CompletableFuture<HttpResponse<Void>> sendAsync(HttpRequest request) throws IOException {
+        acquire();
+        try {
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void acquire() throws IOException {
+        try {
+            if (!inFlight.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new BusyException("Armazenamento de documentos sobrecarregado");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Requisição ao armazenamento interrompida");
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) throws IOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload interrompido");
+        }
+    }
+
+    private static void requireSuccess(HttpResponse<String> response, String operation) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            String body = response.body();
+            throw new IOException("S3 " + operation + ": HTTP " + response.statusCode() + " "
+                    + (body.length() > 512 ? body.substring(0, 512) : body));
+        }
+    }
+
+    /**
+     * Requisição assinada com AWS Signature V4, endereçamento por caminho (endpoint/bucket/chave).
+     * O corpo não entra na assinatura (UNSIGNED-PAYLOAD), o que permite enviar arquivos em streaming.
+     */
+    private HttpRequest.Builder request(String method, String key, Map<String, String> query) {
+        String path = "/" + encode(bucket) + (key != null ? "/" + encodePath(prefix + key) : "/");
+        String canonicalQuery = new TreeMap<>(query).entrySet().stream()
+                .map(entry -> encode(entry.getKey()) + "=" + encode(entry.getValue()))
+                .collect(Collectors.joining("&"));
+        String base = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        URI uri = URI.create(base + path + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery));
+
+        String amzDate = AMZ_DATE.format(Instant.now());
+        String date = amzDate.substring(0, 8);
+        String host = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        String canonicalRequest = method + "\n" + path + "\n" + canonicalQuery + "\n"
+                + "host:" + host + "\n"
+                + "x-amz-content-sha256:" + UNSIGNED_PAYLOAD + "\n"
+                + "x-amz-date:" + amzDate + "\n\n"
+                + SIGNED_HEADERS + "\n" + UNSIGNED_PAYLOAD;
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + sha256Hex(canonicalRequest);
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(requestTimeoutMs))
+                .header("x-amz-date", amzDate)
+                .header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+                .header("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                        + ", SignedHeaders=" + SIGNED_HEADERS + ", Signature=" + signature);
+    }
+
+    private static String encodePath(String path) {
+        return java.util.Arrays.stream(path.split("/", -1))
+                .map(S3DocumentStore::encode)
+                .collect(Collectors.joining("/"));
+    }
+
+    // Codificação RFC 3986 exigida pela assinatura
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8)
+                .replace("+", "%20")
+                .replace("*", "%2A")
+                .replace("%7E", "~");
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 indisponível", e);
+        }
+    }
+
+    private static Element parseXml(String xml) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder()
+                    .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))
+                    .getDocumentElement();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Resposta XML inválida do S3", e);
+        }
+    }
+
+    private static String childText(Element parent, String name) {
+        NodeList nodes = parent.getElementsByTagName(name);
+        return nodes.getLength() > 0 ? nodes.item(0).getTextContent() : null;
+    }
+}
@@ -0,0 +1,50 @@
+package com.finman.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Conteúdo original de um arquivo do armazenamento, pronto para envio: o tamanho original
+ * e a leitura a partir de um offset, já descomprimida. Quando o conteúdo é um arquivo local
+ * puro, {@link #getPlainFile()} permite enviá-lo por sendfile.
+ */
+public final class StoredContent {
+
+    private final long length;
+    private final Path plainFile;
+    private final Opener opener;
+
+    StoredContent(long length, Path plainFile, Opener opener) {
+        this.length = length;
+        this.plainFile = plainFile;
+        this.opener = opener;
+    }
+
+    // Arquivo local sem cabeçalho (miniaturas, arquivos antigos)
+    public static StoredContent ofPlainFile(Path file) throws IOException {
+        return new StoredContent(Files.size(file), file, offset -> {
+            InputStream in = Files.newInputStream(file);
+            in.skipNBytes(offset);
+            return in;
+        });
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public Path getPlainFile() {
+        return plainFile;
+    }
+
+    public InputStream open(long offset) throws IOException {
+        return opener.open(offset);
+    }
+
+    @FunctionalInterface
+    interface Opener {
+        InputStream open(long offset) throws IOException;
+    }
+}
@@ -0,0 +1,215 @@
+package com.finman.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Formato dos arquivos no armazenamento de documentos.
+ *
+ * Um arquivo sem cabeçalho é o conteúdo puro (caso de todos os arquivos antigos). Um arquivo
+ * comprimido começa com um cabeçalho de 16 bytes: 6 bytes mágicos, o codec, o nível de
+ * compressão e o tamanho original, seguidos do conteúdo no formato zlib (Deflater do JDK).
+ * Conteúdo puro que por acaso comece com os bytes mágicos é gravado com cabeçalho e codec
+ * NONE, para que a leitura nunca seja ambígua.
+ */
+public final class StoredFileCodec {
+
+    public static final int HEADER_LENGTH = 16;
+
+    public static final byte CODEC_NONE = 0;
+    public static final byte CODEC_DEFLATE = 1;
+
+    // Começa com NUL: nunca é o início de um PDF ("%PDF") ou de um texto
+    private static final byte[] MAGIC = {0, 'F', 'M', 'Z', '\r', '\n'};
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private StoredFileCodec() {
+    }
+
+    // Os uploads aceitam só imagens e PDFs; imagens já vêm comprimidas, PDFs costumam comprimir bem
+    public static boolean isCompressible(String contentType) {
+        return contentType != null && contentType.equalsIgnoreCase("application/pdf");
+    }
+
+    /**
+     * @return o cabeçalho, ou null se o arquivo é o conteúdo puro
+     */
+    public static Header readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // até completar o cabeçalho ou acabar o arquivo
+            }
+            return buffer.hasRemaining() ? null : parseHeader(buffer.array());
+        }
+    }
+
+    /**
+     * @param prefix primeiros bytes gravados (pelo menos {@link #HEADER_LENGTH} para haver cabeçalho)
+     * @return o cabeçalho, ou null se o conteúdo é puro
+     */
+    public static Header parseHeader(byte[] prefix) {
+        if (prefix.length < HEADER_LENGTH || !startsWithMagic(prefix)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(prefix);
+        return new Header(buffer.get(MAGIC.length), buffer.get(MAGIC.length + 1), buffer.getLong(MAGIC.length + 2));
+    }
+
+    // Tamanho do conteúdo original
+    public static long contentLength(Path file) throws IOException {
+        Header header = readHeader(file);
+        return header != null ? header.originalLength() : Files.size(file);
+    }
+
+    // Conteúdo original, descomprimido durante a leitura
+    public static InputStream openContent(Path file) throws IOException {
+        Header header = readHeader(file);
+        InputStream in = Files.newInputStream(file);
+        if (header == null) {
+            return in;
+        }
+        try {
+            in.skipNBytes(HEADER_LENGTH);
+            return decode(header, in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Conteúdo original a partir dos bytes gravados logo após o cabeçalho.
+     */
+    public static InputStream decode(Header header, InputStream body) throws IOException {
+        if (header.codec() == CODEC_NONE) {
+            return body;
+        }
+        if (header.codec() != CODEC_DEFLATE) {
+            throw new IOException("Codec de armazenamento desconhecido: " + header.codec());
+        }
+        return new InflaterInputStream(body, new Inflater(), BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inf.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Saída que comprime no nível indicado. O cabeçalho sai com tamanho zero e é completado
+     * por {@link #finishHeader(Path, long)} depois de fechar a saída.
+     */
+    public static OutputStream compressingOutput(Path target, int level) throws IOException {
+        OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        out.write(header(CODEC_DEFLATE, level, 0));
+        return new DeflaterOutputStream(out, new Deflater(level), BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    def.end();
+                }
+            }
+        };
+    }
+
+    public static void finishHeader(Path target, long originalLength) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, originalLength), MAGIC.length + 2);
+        }
+    }
+
+    public static boolean worthCompressing(long originalLength, long storedLength, int minSavingPercent) {
+        return originalLength > 0 && (originalLength - storedLength) * 100 >= originalLength * (long) minSavingPercent;
+    }
+
+    /**
+     * Regrava "source" em "target" comprimido no nível indicado, ou puro se a economia não
+     * chegar a "minSavingPercent".
+     *
+     * @return true se ficou comprimido
+     */
+    public static boolean encode(Path source, Path target, int level, int minSavingPercent) throws IOException {
+        long originalLength;
+        try (InputStream in = openContent(source);
+             OutputStream out = compressingOutput(target, level)) {
+            originalLength = in.transferTo(out);
+        }
+        finishHeader(target, originalLength);
+        if (worthCompressing(originalLength, Files.size(target), minSavingPercent)) {
+            return true;
+        }
+        Files.delete(target);
+        try (InputStream in = openContent(source)) {
+            Files.copy(in, target);
+        }
+        frameIfAmbiguous(target);
+        return false;
+    }
+
+    // Troca, no lugar, um arquivo comprimido pelo conteúdo puro
+    public static void decodeInPlace(Path file) throws IOException {
+        Path temp = file.resolveSibling(".decode-" + UUID.randomUUID());
+        try {
+            try (InputStream in = openContent(file)) {
+                Files.copy(in, temp);
+            }
+            frameIfAmbiguous(temp);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Conteúdo puro recém-gravado que começa pelos bytes mágicos é regravado com cabeçalho
+     * NONE, para não ser lido como arquivo com cabeçalho.
+     */
+    public static void frameIfAmbiguous(Path file) throws IOException {
+        if (readHeader(file) == null) {
+            return;
+        }
+        Path temp = file.resolveSibling(".frame-" + UUID.randomUUID());
+        try {
+            try (InputStream in = Files.newInputStream(file);
+                 OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                out.write(header(CODEC_NONE, 0, Files.size(file)));
+                in.transferTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static byte[] header(byte codec, int level, long originalLength) {
+        return ByteBuffer.allocate(HEADER_LENGTH).put(MAGIC).put(codec).put((byte) level).putLong(originalLength).array();
+    }
+
+    private static boolean startsWithMagic(byte[] bytes) {
+        return bytes.length >= MAGIC.length && Arrays.equals(bytes, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    public record Header(byte codec, byte level, long originalLength) {
+    }
+}
@@ -0,0 +1,301 @@
+package com.finman.service;
+
+import com.finman.model.Document;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Miniaturas JPEG dos documentos de imagem, geradas em segundo plano com ImageIO.
+ *
+ * A geração é disparada após o upload (e, se faltar, no primeiro pedido) num pool limitado;
+ * com a fila cheia o pedido é descartado e volta a ser feito no próximo acesso. As miniaturas
+ * ficam em disco, nomeadas pelo hash do conteúdo e pelo tamanho, então documentos com o mesmo
+ * arquivo compartilham a mesma miniatura. Quem pede uma miniatura que ainda não existe nunca
+ * espera a geração.
+ *
+ * Só conteúdo que o ImageIO não sabe ler (sem leitor para o formato ou falha na decodificação)
+ * fica marcado como ilegível. Falhas de leitura do armazenamento (backend ocupado, timeout,
+ * arquivo momentaneamente ausente durante a ida para a camada fria) não marcam nada: o
+ * próximo pedido da miniatura tenta de novo.
+ */
+@Service
+public class ThumbnailService {
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.document.thumbnail.dir:thumbnails}")
+    private String thumbnailDir;
+
+    @Value("${app.document.thumbnail.quality:0.8}")
+    private float quality;
+
+    // Tamanhos gerados (lado maior, em pixels); pedidos são arredondados para um deles
+    private final int[] sizes;
+
+    private final ThreadPoolExecutor thumbnailExecutor;
+
+    // Miniaturas na fila ou sendo geradas, para não enfileirar a mesma duas vezes
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    // Arquivos que o ImageIO não conseguiu decodificar (formato sem leitor, arquivo corrompido)
+    private final Map<String, Boolean> unreadable = new ConcurrentHashMap<>();
+
+    public ThumbnailService(@Value("${app.document.thumbnail.sizes:200,400}") int[] sizes,
+                            @Value("${app.document.thumbnail.threads:2}") int threads,
+                            @Value("${app.document.thumbnail.queue-size:200}") int queueSize) {
+        this.sizes = Arrays.stream(sizes).filter(size -> size > 0).sorted().distinct().toArray();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.thumbnailExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "document-thumbnail-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        this.thumbnailExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        thumbnailExecutor.shutdownNow();
+    }
+
+    public static boolean supports(Document document) {
+        return document.getContentType() != null && document.getContentType().startsWith("image/");
+    }
+
+    // Menor tamanho gerado que atende ao pedido; acima do maior, o maior
+    public int normalizeSize(int requested) {
+        for (int size : sizes) {
+            if (size >= requested) {
+                return size;
+            }
+        }
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * Caminho da miniatura se ela já existe; caso contrário agenda a geração e retorna null.
+     */
+    public Path findOrSchedule(Document document, int size) {
+        if (!supports(document)) {
+            return null;
+        }
+        Path thumbnail = thumbnailPath(document, size);
+        if (Files.isRegularFile(thumbnail)) {
+            return thumbnail;
+        }
+        schedule(document, size);
+        return null;
+    }
+
+    // Documento novo: gera todos os tamanhos após o commit do upload
+    public void documentStored(Document document) {
+        if (supports(document)) {
+            AfterCommit.run(() -> {
+                for (int size : sizes) {
+                    schedule(document, size);
+                }
+            });
+        }
+    }
+
+    // Documento excluído: as miniaturas saem junto com o último arquivo que as origina
+    public void documentDeleted(Document document) throws IOException {
+        if (supports(document) && !fileStorageService.fileExists(document.getFileName())) {
+            String key = sourceKey(document);
+            unreadable.remove(key);
+            for (int size : sizes) {
+                Files.deleteIfExists(thumbnailPath(key, size));
+            }
+        }
+    }
+
+    private void schedule(Document document, int size) {
+        String key = sourceKey(document);
+        String source = document.getFileName();
+        Path target = thumbnailPath(key, size);
+        String task = key + "-" + size;
+        if (unreadable.containsKey(key) || !inProgress.add(task)) {
+            return;
+        }
+        try {
+            thumbnailExecutor.execute(() -> {
+                try {
+                    generate(source, target, size);
+                } catch (UndecodableImageException e) {
+                    unreadable.put(key, Boolean.TRUE);
+                } catch (IOException | RuntimeException e) {
+                    // Falha de leitura ou gravação: o próximo pedido tenta de novo
+                } finally {
+                    inProgress.remove(task);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Fila cheia: o próximo pedido da miniatura tenta de novo
+            inProgress.remove(task);
+        }
+    }
+
+    private void generate(String source, Path target, int size) throws IOException {
+        if (Files.isRegularFile(target)) {
+            return;
+        }
+        StoredContent content = fileStorageService.open(source);
+        if (content == null) {
+            return;
+        }
+        BufferedImage image = readScaled(content, size);
+        BufferedImage thumbnail = resize(image, size);
+
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(".thumbnail-" + UUID.randomUUID());
+        try {
+            writeJpeg(thumbnail, temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Decodifica a imagem já reduzida por subamostragem (lê uma linha/coluna a cada N),
+     * mantendo pelo menos o dobro do tamanho pedido para o redimensionamento final. Uma foto
+     * de celular não chega a ocupar o heap em resolução cheia.
+     */
+    private static BufferedImage readScaled(StoredContent source, int size) throws IOException {
+        // Arquivo local puro é lido direto do disco; os demais, em streaming
+        InputStream content = source.getPlainFile() == null ? source.open(0) : null;
+        try (content; ImageInputStream input = ImageIO.createImageInputStream(
+                content != null ? content : source.getPlainFile().toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new UndecodableImageException("Formato de imagem não suportado", null);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, longestSide / (size * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage image = reader.read(0, param);
+                if (image == null) {
+                    throw new UndecodableImageException("Imagem vazia", null);
+                }
+                return image;
+            } catch (IIOException e) {
+                // Os leitores embrulham também erros do stream; esses não dizem nada sobre o conteúdo
+                if (hasStreamCause(e)) {
+                    throw e;
+                }
+                throw new UndecodableImageException("Imagem corrompida", e);
+            } catch (RuntimeException e) {
+                // Decodificadores do JDK falham com exceções de runtime em dados malformados
+                throw new UndecodableImageException("Imagem corrompida", e);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static boolean hasStreamCause(IIOException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            // Fim antecipado é arquivo truncado, não falha do stream
+            if (cause instanceof IOException && !(cause instanceof IIOException) && !(cause instanceof EOFException)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Lado maior reduzido para "size" (sem ampliar), fundo branco no lugar da transparência
+    private static BufferedImage resize(BufferedImage image, int size) {
+        double scale = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return thumbnail;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private Path thumbnailPath(Document document, int size) {
+        return thumbnailPath(sourceKey(document), size);
+    }
+
+    private Path thumbnailPath(String key, int size) {
+        return Paths.get(thumbnailDir).resolve(key + "-" + size + ".jpg");
+    }
+
+    // Hash do conteúdo; documentos ainda no formato antigo usam o nome do arquivo
+    private static String sourceKey(Document document) {
+        return document.getContentHash() != null ? document.getContentHash() : document.getFileName();
+    }
+
+    // Conteúdo lido por inteiro, mas que o ImageIO não consegue transformar em imagem
+    private static final class UndecodableImageException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        UndecodableImageException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.finman.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Move os arquivos por hash do diretório raiz de uploads para o backend de armazenamento
+ * (os subdiretórios por prefixo no disco local, ou o bucket S3).
+ *
+ * Roda em segundo plano com a aplicação no ar: percorre a raiz em streaming (sem listar o
+ * diretório inteiro em memória) e pausa a cada lote para não disputar disco com as
+ * requisições. No disco local cada arquivo é movido por rename atômico; enquanto não é
+ * movido continua sendo encontrado na raiz, então downloads não são interrompidos.
+ */
+@Service
+public class UploadLayoutMigration {
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.file.layout-migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.file.layout-migration.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.file.layout-migration.pause-ms:200}")
+    private long pauseMs;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            Thread thread = new Thread(this::migrate, "upload-layout-migration");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    /**
+     * @return quantidade de arquivos retirados da raiz
+     */
+    public int migrate() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        int moved = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(fileStorageService.getUploadRoot(),
+                path -> FileStorageService.isContentHash(path.getFileName().toString()))) {
+            int inBatch = 0;
+            for (Path file : files) {
+                try {
+                    if (fileStorageService.moveToStore(file.getFileName().toString())) {
+                        moved++;
+                    }
+                } catch (IOException e) {
+                    // Fica na raiz, onde continua acessível; a próxima execução tenta de novo
+                }
+                if (++inBatch == batchSize) {
+                    inBatch = 0;
+                    Thread.sleep(pauseMs);
+                }
+            }
+        } catch (IOException e) {
+            // Diretório de uploads ainda não existe: nada a migrar
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running.set(false);
+        }
+        return moved;
+    }
+}
@@ -13,7 +13,10 @@ INSERT INTO loans (user_id, loan_amount, interest_rate, start_date, end_date, pa
 (5, 1000.00, 0.2000, '2024-12-29', '2025-03-29', 'MONTHLY', 'FIXED_INSTALLMENTS', 3, 'ACTIVE', 950.00, 475.00, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
 
 -- Inserir parcelas do empréstimo do Willian
-INSERT INTO loan_installments (loan_id, installment_number, due_date, principal_amount, interest_amount, total_due_amount, is_paid, paid_amount, paid_at, created_at, updated_at) VALUES
-(1, 1, '2025-01-29', 333.33, 141.67, 475.00, true, 475.00, '2025-01-29 00:00:00', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
-(1, 2, '2025-02-28', 333.33, 141.67, 475.00, false, 550.00, NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
-(1, 3, '2025-03-29', 333.34, 141.66, 475.00, false, 0.00, NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+INSERT INTO loan_installments (id, loan_id, installment_number, due_date, principal_amount, interest_amount, total_due_amount, is_paid, paid_amount, paid_at, created_at, updated_at) VALUES
+(1, 1, 1, '2025-01-29', 333.33, 141.67, 475.00, true, 475.00, '2025-01-29 00:00:00', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+(2, 1, 2, '2025-02-28', 333.33, 141.67, 475.00, false, 550.00, NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+(3, 1, 3, '2025-03-29', 333.34, 141.66, 475.00, false, 0.00, NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+
+-- Parcelas usam sequência com pool de 50 ids (ver LoanInstallment); avançar além dos ids inseridos acima
+ALTER SEQUENCE loan_installments_seq RESTART WITH 101;
@@ -0,0 +1,190 @@
+package com.finman.service;
+
+import com.finman.model.enums.PaymentFrequency;
+import com.finman.model.enums.PaymentType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Paridade do {@link AmortizationEngine} com os geradores em BigDecimal que ficavam no
+ * LoanController (reproduzidos em {@link #legacySchedule}): mesmas datas e mesmos valores,
+ * centavo a centavo, em todos os tipos de pagamento e frequências (ALTERNATE_DAYS com e sem
+ * intervalo informado).
+ */
+class AmortizationEngineTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 31);
+
+    private final AmortizationEngine engine = new AmortizationEngine();
+
+    static Stream<Arguments> schedules() {
+        List<Arguments> cases = new ArrayList<>();
+        String[] amounts = {"1000.00", "1000", "0.01", "12345.67", "999999999.99"};
+        String[] rates = {"0.20", "0.0199", "0.0001", "0", "0.1234"};
+        int[] terms = {1, 2, 3, 7, 12, 360};
+        // Frequência e intervalo de ALTERNATE_DAYS (null: padrão de 2 dias)
+        Object[][] frequencies = {
+                {PaymentFrequency.DAILY, null}, {PaymentFrequency.WEEKLY, null}, {PaymentFrequency.MONTHLY, null},
+                {PaymentFrequency.ALTERNATE_DAYS, null}, {PaymentFrequency.ALTERNATE_DAYS, 1},
+                {PaymentFrequency.ALTERNATE_DAYS, 3}
+        };
+        for (PaymentType type : PaymentType.values()) {
+            for (Object[] frequency : frequencies) {
+                for (int i = 0; i < amounts.length; i++) {
+                    for (int term : terms) {
+                        cases.add(Arguments.of(type, frequency[0], frequency[1], new BigDecimal(amounts[i]),
+                                new BigDecimal(rates[i]), term));
+                    }
+                }
+            }
+        }
+        return cases.stream();
+    }
+
+    @ParameterizedTest(name = "{0} {1}({2}) {3} a {4} em {5}")
+    @MethodSource("schedules")
+    void computeMatchesLegacyGenerators(PaymentType type, PaymentFrequency frequency, Integer interval,
+                                        BigDecimal amount, BigDecimal rate, int term) {
+        List<LegacyRow> expected = legacySchedule(type, frequency, interval, amount, rate, term);
+        AmortizationSchedule schedule = engine.compute(amount, rate, term, frequency, type, interval, START);
+
+        assertEquals(expected.size(), schedule.size());
+        for (int i = 0; i < expected.size(); i++) {
+            LegacyRow row = expected.get(i);
+            String at = "parcela " + (i + 1);
+            assertEquals(row.dueDate(), schedule.getDueDate(i), at);
+            assertEquals(cents(row.principal()), schedule.getPrincipalCents(i), at);
+            assertEquals(cents(row.interest()), schedule.getInterestCents(i), at);
+            assertEquals(cents(row.total()), schedule.getTotalCents(i), at);
+        }
+    }
+
+    @ParameterizedTest(name = "{0} {1}({2}) {3} a {4} em {5}")
+    @MethodSource("schedules")
+    void summarizeMatchesComputedSchedule(PaymentType type, PaymentFrequency frequency, Integer interval,
+                                          BigDecimal amount, BigDecimal rate, int term) {
+        AmortizationSchedule schedule = engine.compute(amount, rate, term, frequency, type, interval, START);
+        AmortizationSummary summary = engine.summarize(amount, rate, term, frequency, type, interval, START);
+
+        assertEquals(schedule.size(), summary.getInstallmentCount());
+        assertEquals(schedule.getTotalCents(0), summary.getFirstInstallmentCents());
+        assertEquals(schedule.getTotalPrincipalCents(), summary.getTotalPrincipalCents());
+        assertEquals(schedule.getTotalInterestCents(), summary.getTotalInterestCents());
+        assertEquals(schedule.getDueDate(schedule.size() - 1), summary.getLastDueDate());
+    }
+
+    // Intervalo zero ou negativo repetiria a data (ou voltaria no tempo): recusado, nunca mensal
+    @ParameterizedTest(name = "intervalo {0}")
+    @ValueSource(ints = {0, -1})
+    void nonPositiveAlternateDaysIntervalIsRejected(int interval) {
+        BigDecimal amount = new BigDecimal("1000.00");
+        BigDecimal rate = new BigDecimal("0.02");
+        PaymentFrequency frequency = PaymentFrequency.ALTERNATE_DAYS;
+
+        assertFalse(AmortizationEngine.isValidAlternateDaysInterval(frequency, interval));
+        assertThrows(IllegalArgumentException.class, () -> engine.compute(amount, rate, 3, frequency,
+                PaymentType.FIXED_INSTALLMENTS, interval, START));
+        assertThrows(IllegalArgumentException.class, () -> engine.summarize(amount, rate, 3, frequency,
+                PaymentType.FIXED_INSTALLMENTS, interval, START));
+        assertThrows(IllegalArgumentException.class, () -> AmortizationEngine.lastDueDate(START, frequency, interval, 3));
+
+        // Nas demais frequências o intervalo é ignorado
+        assertTrue(AmortizationEngine.isValidAlternateDaysInterval(PaymentFrequency.MONTHLY, interval));
+        assertEquals(START.plusMonths(1), engine.compute(amount, rate, 2, PaymentFrequency.MONTHLY,
+                PaymentType.FIXED_INSTALLMENTS, interval, START).getDueDate(1));
+    }
+
+    /**
+     * Única diferença conhecida: o engine arredonda o valor do empréstimo para centavos antes
+     * de calcular, e os geradores antigos usavam o BigDecimal recebido. Só aparece com valores
+     * de mais de 2 casas, que não chegam ao desembolso (loan_amount é DECIMAL(18,2)), apenas
+     * à simulação e à cotação.
+     */
+    @Test
+    void amountWithMoreThanTwoDecimalsIsRoundedToCentsFirst() {
+        BigDecimal amount = new BigDecimal("1000.005");
+        BigDecimal rate = new BigDecimal("0.02");
+        List<LegacyRow> legacy = legacySchedule(PaymentType.FIXED_INSTALLMENTS, PaymentFrequency.MONTHLY, null,
+                amount, rate, 3);
+        AmortizationSchedule schedule = engine.compute(amount, rate, 3, PaymentFrequency.MONTHLY,
+                PaymentType.FIXED_INSTALLMENTS, null, START);
+        AmortizationSchedule rounded = engine.compute(new BigDecimal("1000.01"), rate, 3, PaymentFrequency.MONTHLY,
+                PaymentType.FIXED_INSTALLMENTS, null, START);
+
+        // Antigo: a última parcela quitava 333.325, com 3 casas
+        assertEquals(new BigDecimal("333.325"), legacy.get(2).principal());
+        assertNotEquals(0, legacy.get(2).principal().compareTo(schedule.getPrincipalAmount(2)));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(rounded.getPrincipalCents(i), schedule.getPrincipalCents(i));
+            assertEquals(rounded.getInterestCents(i), schedule.getInterestCents(i));
+        }
+    }
+
+    private static long cents(BigDecimal value) {
+        return value.movePointRight(2).longValueExact();
+    }
+
+    // Geradores do LoanController antes do engine, sem as entidades
+    private static List<LegacyRow> legacySchedule(PaymentType type, PaymentFrequency frequency, Integer interval,
+                                                  BigDecimal loanAmount, BigDecimal rate, int term) {
+        List<LegacyRow> rows = new ArrayList<>();
+        BigDecimal remainingPrincipal = loanAmount;
+        LocalDate currentDate = START;
+        for (int i = 1; i <= term; i++) {
+            BigDecimal interestAmount = remainingPrincipal.multiply(rate).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal currentPrincipalAmount;
+            switch (type) {
+                case INTEREST_ONLY:
+                    currentPrincipalAmount = BigDecimal.ZERO;
+                    break;
+                case FLEXIBLE:
+                    currentPrincipalAmount = remainingPrincipal.divide(BigDecimal.valueOf(term - i + 1), 2, RoundingMode.HALF_UP);
+                    break;
+                case FIXED_INSTALLMENTS:
+                default:
+                    currentPrincipalAmount = loanAmount.divide(BigDecimal.valueOf(term), 2, RoundingMode.HALF_UP);
+                    break;
+            }
+            if (i == term) {
+                currentPrincipalAmount = remainingPrincipal;
+            }
+            rows.add(new LegacyRow(currentDate, currentPrincipalAmount, interestAmount,
+                    currentPrincipalAmount.add(interestAmount)));
+            remainingPrincipal = remainingPrincipal.subtract(currentPrincipalAmount);
+            switch (frequency) {
+                case DAILY:
+                    currentDate = currentDate.plusDays(1);
+                    break;
+                case WEEKLY:
+                    currentDate = currentDate.plusWeeks(1);
+                    break;
+                case ALTERNATE_DAYS:
+                    currentDate = currentDate.plusDays(interval != null ? interval : 2);
+                    break;
+                default:
+                    currentDate = currentDate.plusMonths(1);
+                    break;
+            }
+        }
+        return rows;
+    }
+
+    private record LegacyRow(LocalDate dueDate, BigDecimal principal, BigDecimal interest, BigDecimal total) {
+    }
+}
@@ -0,0 +1,149 @@
+package com.finman.service;
+
+import com.finman.model.Loan;
+import com.finman.model.User;
+import com.finman.model.enums.LoanStatus;
+import com.finman.model.enums.PaymentFrequency;
+import com.finman.repository.LoanRepository;
+import com.finman.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Consultas agregadas de {@link DashboardStatsService#getStatsFromDatabase()} com N e 10N
+ * parcelas. Fora do {@code mvn test}: roda com {@code mvn test -Pbenchmark}.
+ *
+ * As latências medianas são gravadas em target/benchmark, sem comparação de tempos.
+ * O que se verifica é o que não depende da máquina: uma consulta por métrica, nenhuma
+ * entidade carregada e as contagens de parcelas resolvidas pelo índice (is_paid, due_date).
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.springframework.web=INFO",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"
+})
+class DashboardStatsServiceBenchmarkTest {
+
+    private static final int LOANS = 100;
+    private static final int INSTALLMENTS = 20_000;
+    private static final int ITERATIONS = 50;
+    private static final int METRIC_QUERIES = 5;
+    private static final String PAID_DUE_INDEX = "IDX_LOAN_INSTALLMENTS_PAID_DUE";
+    private static final Path RESULTS = Path.of("target", "benchmark", "dashboard-stats-from-database.csv");
+
+    // Vencimentos nos mesmos 2 anos (metade já vencida) nas duas cargas, para que só o número de
+    // parcelas mude; uma em cada quatro paga
+    private static final String SEED_SQL =
+            "INSERT INTO loan_installments (id, loan_id, installment_number, due_date, principal_amount, " +
+            "interest_amount, total_due_amount, paid_amount, is_paid, created_at, updated_at) " +
+            "SELECT NEXT VALUE FOR loan_installments_seq, ?, X, DATEADD('DAY', MOD(X, 730) - 365, CURRENT_DATE), " +
+            "10, 1, 11, 0, MOD(X, 4) = 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP FROM SYSTEM_RANGE(?, ?)";
+
+    @Autowired
+    private DashboardStatsService dashboardStatsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void aggregateQueriesAtNAndTenN() throws IOException {
+        List<Long> loanIds = createLoans();
+
+        seed(loanIds, 1, INSTALLMENTS / LOANS);
+        checkQueries();
+        double smallMillis = medianMillis();
+
+        seed(loanIds, INSTALLMENTS / LOANS + 1, 10 * INSTALLMENTS / LOANS);
+        checkQueries();
+        double largeMillis = medianMillis();
+
+        Files.createDirectories(RESULTS.getParent());
+        Files.writeString(RESULTS, "installments,medianMs\n"
+                + INSTALLMENTS + "," + smallMillis + "\n"
+                + 10 * INSTALLMENTS + "," + largeMillis + "\n");
+    }
+
+    private List<Long> createLoans() {
+        User user = userRepository.save(new User("Benchmark", "Dashboard"));
+        List<Long> loanIds = new ArrayList<>(LOANS);
+        for (int i = 0; i < LOANS; i++) {
+            Loan loan = new Loan(user, new BigDecimal("1000.00"), new BigDecimal("0.0200"), 12,
+                    PaymentFrequency.MONTHLY, LocalDate.now(), LocalDate.now().plusYears(1));
+            loan.setStatus(LoanStatus.ACTIVE);
+            loanIds.add(loanRepository.save(loan).getId());
+        }
+        return loanIds;
+    }
+
+    // Números de parcela de first a last em cada empréstimo
+    private void seed(List<Long> loanIds, int first, int last) {
+        for (Long loanId : loanIds) {
+            jdbcTemplate.update(SEED_SQL, loanId, first, last);
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private void checkQueries() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        Map<String, Object> stats = dashboardStatsService.getStatsFromDatabase();
+        assertFalse(stats.containsKey("partial"), "métricas indisponíveis: " + stats.get("unavailable"));
+        assertEquals(METRIC_QUERIES, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        // Mesmas condições das consultas derivadas de LoanInstallmentRepository
+        assertUsesIndex("EXPLAIN SELECT COUNT(*) FROM loan_installments WHERE is_paid = TRUE");
+        assertUsesIndex("EXPLAIN SELECT COUNT(*) FROM loan_installments WHERE due_date < CURRENT_DATE AND is_paid = FALSE");
+    }
+
+    private void assertUsesIndex(String explain) {
+        String plan = jdbcTemplate.queryForObject(explain, String.class);
+        assertTrue(plan.toUpperCase().contains(PAID_DUE_INDEX), plan);
+    }
+
+    private double medianMillis() {
+        long[] samples = new long[ITERATIONS];
+        for (int i = -ITERATIONS / 5; i < ITERATIONS; i++) {
+            long startedAt = System.nanoTime();
+            dashboardStatsService.getStatsFromDatabase();
+            long elapsed = System.nanoTime() - startedAt;
+            if (i >= 0) {
+                samples[i] = elapsed;
+            }
+        }
+        Arrays.sort(samples);
+        return samples[ITERATIONS / 2] / 1_000_000.0;
+    }
+}
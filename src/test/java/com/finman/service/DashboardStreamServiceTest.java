@@ -0,0 +1,122 @@
+package com.finman.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Um cliente que para de ler deixa o envio preso segurando o monitor do emitter (como o
+ * send do Spring, que é synchronized). Os demais clientes continuam recebendo os ticks, e o
+ * cliente preso é encerrado quando o envio retorna.
+ */
+class DashboardStreamServiceTest {
+
+    private final PortfolioCounters portfolioCounters = new PortfolioCounters();
+
+    private final DashboardStreamService service = new DashboardStreamService(2, 100);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.stop();
+    }
+
+    @Test
+    void stalledClientDoesNotBlockOtherClients() throws Exception {
+        AtomicInteger statsVersion = new AtomicInteger();
+        DashboardStatsService statsService = mock(DashboardStatsService.class);
+        when(statsService.getStats()).thenAnswer(invocation -> Map.of("totalUsers", statsVersion.incrementAndGet()));
+        ReflectionTestUtils.setField(service, "dashboardStatsService", statsService);
+        ReflectionTestUtils.setField(service, "portfolioCounters", portfolioCounters);
+        ReflectionTestUtils.setField(service, "installmentDueIndex", new InstallmentDueIndex());
+        ReflectionTestUtils.setField(service, "intervalMs", 20L);
+        ReflectionTestUtils.setField(service, "heartbeatMs", 30_000L);
+        ReflectionTestUtils.setField(service, "timeoutMs", 60_000L);
+        ReflectionTestUtils.setField(service, "sendTimeoutMs", 100L);
+
+        StalledEmitter stalled = new StalledEmitter(release);
+        CountingEmitter reader = new CountingEmitter();
+        service.subscribe(stalled);
+        service.subscribe(reader);
+        service.start();
+        assertTrue(stalled.sendStarted.await(5, TimeUnit.SECONDS));
+
+        // Bem depois do send-timeout: o cliente preso já foi marcado para encerrar
+        changeFor(500);
+        int received = reader.sends.get();
+        changeFor(500);
+        assertTrue(reader.sends.get() > received, "o cliente que lê parou de receber: " + received);
+        assertFalse(stalled.completed, "o emitter preso não pode ser encerrado enquanto o envio segura o monitor");
+
+        // O envio retorna (no servidor, pelo timeout de escrita do container) e o cliente é encerrado
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!stalled.completed && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(stalled.completed);
+        assertEquals(1, service.getClientCount());
+    }
+
+    // Altera os contadores continuamente, para que todo intervalo tenha um delta a enviar
+    private void changeFor(long millis) throws InterruptedException {
+        long end = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < end) {
+            portfolioCounters.usersChanged(1);
+            Thread.sleep(5);
+        }
+    }
+
+    private static final class StalledEmitter extends SseEmitter {
+        private final CountDownLatch release;
+        private final CountDownLatch sendStarted = new CountDownLatch(1);
+        private volatile boolean completed;
+
+        StalledEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            synchronized (this) {
+                sendStarted.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("Conexão encerrada");
+            }
+        }
+
+        @Override
+        public synchronized void completeWithError(Throwable ex) {
+            super.completeWithError(ex);
+            completed = true;
+        }
+    }
+
+    private static final class CountingEmitter extends SseEmitter {
+        private final AtomicInteger sends = new AtomicInteger();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sends.incrementAndGet();
+        }
+    }
+}
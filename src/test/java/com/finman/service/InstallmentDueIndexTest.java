@@ -0,0 +1,110 @@
+package com.finman.service;
+
+import com.finman.model.Loan;
+import com.finman.model.LoanInstallment;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compara o {@link InstallmentDueIndex} com um modelo ingênuo (lista de parcelas em aberto)
+ * depois de criações, pagamentos e exclusões de empréstimos em ordem aleatória.
+ */
+class InstallmentDueIndexTest {
+
+    private static final LocalDate BASE = LocalDate.of(2026, 1, 1);
+
+    private final InstallmentDueIndex index = new InstallmentDueIndex();
+
+    // Modelo: id da parcela -> {empréstimo, dia}
+    private final Map<Long, long[]> open = new HashMap<>();
+
+    @Test
+    void matchesNaiveModelUnderRandomChanges() {
+        Random random = new Random(42);
+        long nextInstallmentId = 1;
+        long nextLoanId = 1;
+
+        for (int step = 0; step < 3000; step++) {
+            int action = random.nextInt(10);
+            if (action < 4 || open.isEmpty()) {
+                long loanId = nextLoanId++;
+                int count = 1 + random.nextInt(40);
+                int firstDay = random.nextInt(400);
+                int stepDays = 1 + random.nextInt(30);
+                List<LoanInstallment> installments = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    long id = nextInstallmentId++;
+                    installments.add(installment(id, loanId, firstDay + i * stepDays));
+                    open.put(id, new long[]{loanId, firstDay + i * stepDays});
+                }
+                index.installmentsCreated(installments);
+            } else if (action < 9) {
+                List<Long> ids = new ArrayList<>(open.keySet());
+                List<Long> paid = new ArrayList<>();
+                for (int i = 0; i < 1 + random.nextInt(5); i++) {
+                    paid.add(ids.get(random.nextInt(ids.size())));
+                }
+                paid.forEach(open::remove);
+                index.installmentsRemoved(paid);
+            } else {
+                long loanId = 1 + random.nextInt((int) nextLoanId);
+                open.values().removeIf(entry -> entry[0] == loanId);
+                index.loansRemoved(List.of(loanId));
+            }
+
+            if (step % 50 == 0) {
+                assertMatches(random, nextLoanId);
+            }
+        }
+        assertMatches(random, nextLoanId);
+    }
+
+    private void assertMatches(Random random, long nextLoanId) {
+        for (int day : new int[]{0, random.nextInt(500), random.nextInt(500), 2000}) {
+            LocalDate asOf = BASE.plusDays(day);
+            List<Long> expected = expected(entry -> entry.getValue()[1] < day);
+            assertEquals(expected, index.findOverdue(asOf));
+            assertEquals(expected.size(), index.countOverdue(asOf));
+            // Segunda contagem do mesmo dia vem da última calculada
+            assertEquals(expected.size(), index.countOverdue(asOf));
+
+            long loanId = 1 + random.nextInt((int) nextLoanId);
+            assertEquals(expected(entry -> entry.getValue()[0] == loanId && entry.getValue()[1] < day),
+                    index.findOverdue(loanId, asOf));
+
+            int to = day + random.nextInt(60);
+            assertEquals(expected(entry -> entry.getValue()[1] >= day && entry.getValue()[1] <= to),
+                    index.findDueBetween(asOf, BASE.plusDays(to)));
+        }
+    }
+
+    private List<Long> expected(Predicate<Map.Entry<Long, long[]>> filter) {
+        return open.entrySet().stream()
+                .filter(filter)
+                .sorted(Comparator.<Map.Entry<Long, long[]>>comparingLong(entry -> entry.getValue()[1])
+                        .thenComparingLong(Map.Entry::getKey))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static LoanInstallment installment(long id, long loanId, int day) {
+        Loan loan = new Loan();
+        loan.setId(loanId);
+        LoanInstallment installment = new LoanInstallment();
+        installment.setId(id);
+        installment.setLoan(loan);
+        installment.setDueDate(BASE.plusDays(day));
+        installment.setIsPaid(false);
+        return installment;
+    }
+}
@@ -0,0 +1,118 @@
+package com.finman.service;
+
+import com.finman.dto.LoanPaymentAllocationResponse;
+import com.finman.model.Loan;
+import com.finman.model.User;
+import com.finman.model.enums.LoanStatus;
+import com.finman.model.enums.PaymentFrequency;
+import com.finman.repository.LoanInstallmentRepository;
+import com.finman.repository.LoanRepository;
+import com.finman.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rateio com uma parcela em aberto que já tem o valor todo pago (como a parcela 2 dos dados
+ * de exemplo, 550 pagos de 475): ela é quitada no mesmo pagamento e não trava o empréstimo.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.springframework.web=INFO",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"
+})
+class LoanPaymentServiceTest {
+
+    private static final String INSERT_INSTALLMENT_SQL =
+            "INSERT INTO loan_installments (id, loan_id, installment_number, due_date, principal_amount, " +
+            "interest_amount, total_due_amount, paid_amount, is_paid, created_at, updated_at) " +
+            "VALUES (NEXT VALUE FOR loan_installments_seq, ?, ?, ?, 400.00, 75.00, 475.00, ?, FALSE, " +
+            "CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
+
+    @Autowired
+    private LoanPaymentService loanPaymentService;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LoanInstallmentRepository installmentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void coveredOpenInstallmentIsSettledAndLoanCanBePaid() {
+        Long loanId = createLoanWithCoveredInstallment();
+        Long coveredId = installmentId(loanId, 1);
+        Long openId = installmentId(loanId, 2);
+
+        // Pagamento parcial: a coberta é quitada, o valor vai todo para a seguinte
+        LoanPaymentAllocationResponse partial = loanPaymentService.payLoan(loanId, new BigDecimal("100.00")).orElseThrow();
+        assertEquals(1, partial.getAllocations().size());
+        assertEquals(openId, partial.getAllocations().get(0).getInstallmentId());
+        assertEquals(LoanStatus.ACTIVE, partial.getLoanStatus());
+        assertTrue(isPaid(coveredId));
+        assertNotNull(installmentRepository.findById(coveredId).orElseThrow().getPaidAt());
+        assertEquals(0, new BigDecimal("550.00").compareTo(paidAmount(coveredId)));
+        assertFalse(isPaid(openId));
+
+        // O restante quita a última parcela e o empréstimo
+        LoanPaymentAllocationResponse rest = loanPaymentService.payLoan(loanId, new BigDecimal("375.00")).orElseThrow();
+        assertTrue(rest.getAllocations().get(0).isSettled());
+        assertTrue(isPaid(openId));
+        assertEquals(LoanStatus.PAID, rest.getLoanStatus());
+    }
+
+    @Test
+    void singlePaymentSettlesLoanWithCoveredInstallment() {
+        Long loanId = createLoanWithCoveredInstallment();
+
+        LoanPaymentAllocationResponse payment = loanPaymentService.payLoan(loanId, new BigDecimal("475.00")).orElseThrow();
+
+        assertEquals(LoanStatus.PAID, payment.getLoanStatus());
+        assertEquals(LoanStatus.PAID, loanRepository.findById(loanId).orElseThrow().getStatus());
+        assertTrue(isPaid(installmentId(loanId, 1)));
+        assertTrue(isPaid(installmentId(loanId, 2)));
+    }
+
+    // Parcela 1 em aberto com 550 pagos de 475; parcela 2 sem pagamento
+    private Long createLoanWithCoveredInstallment() {
+        User user = userRepository.save(new User("Pagamento", "Coberto"));
+        Loan loan = new Loan(user, new BigDecimal("800.00"), new BigDecimal("0.0200"), 2,
+                PaymentFrequency.MONTHLY, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 2, 1));
+        loan.setStatus(LoanStatus.ACTIVE);
+        Long loanId = loanRepository.save(loan).getId();
+        jdbcTemplate.update(INSERT_INSTALLMENT_SQL, loanId, 1, LocalDate.of(2025, 1, 1), new BigDecimal("550.00"));
+        jdbcTemplate.update(INSERT_INSTALLMENT_SQL, loanId, 2, LocalDate.of(2025, 2, 1), BigDecimal.ZERO);
+        return loanId;
+    }
+
+    private Long installmentId(Long loanId, int installmentNumber) {
+        return jdbcTemplate.queryForObject("SELECT id FROM loan_installments WHERE loan_id = ? AND installment_number = ?",
+                Long.class, loanId, installmentNumber);
+    }
+
+    private boolean isPaid(Long installmentId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT is_paid FROM loan_installments WHERE id = ?",
+                Boolean.class, installmentId));
+    }
+
+    private BigDecimal paidAmount(Long installmentId) {
+        return jdbcTemplate.queryForObject("SELECT paid_amount FROM loan_installments WHERE id = ?",
+                BigDecimal.class, installmentId);
+    }
+}